@@ -0,0 +1,344 @@
+package com.baasday.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * <p>com.baasday.BaasdayCollectionアノテーションを付けたクラスに対して、com.baasday.ObjectBindingの実装を生成するアノテーションプロセッサです。</p>
+ * <p>生成されるクラスはアノテーションを付けたクラスと同じパッケージに、クラス名の後ろにBindingを付けた名前で作成されます。入れ子のクラスの場合は、外側のクラス名と"_"でつないだ名前になります。生成されたクラスはINSTANCEフィールドでインスタンスを公開し、実行時にリフレクションを使いません。</p>
+ * <p>スーパークラスで宣言されたフィールドも対象になります。別のパッケージのスーパークラスのフィールドはpublicである必要があります。</p>
+ * <p>このプロセッサはアプリケーションのコンパイル時にだけ必要です。javacの-processorpathやAndroidのビルドのannotationProcessor設定に、このプロセッサのjarファイルを指定してください。</p>
+ */
+public class BaasdayProcessor extends AbstractProcessor {
+    private static final String COLLECTION_ANNOTATION = "com.baasday.BaasdayCollection";
+    private static final String FIELD_ANNOTATION = "com.baasday.BaasdayField";
+    private static final String ID_FIELD = "_id";
+
+    private static enum FieldKind {
+        STRING, INT, LONG, DOUBLE, FLOAT, BOOLEAN, INTEGER_OBJECT, LONG_OBJECT, DOUBLE_OBJECT, FLOAT_OBJECT, BOOLEAN_OBJECT, DATE, MAP, LIST, OBJECT
+    }
+
+    private static final class BoundField {
+        final String javaName;
+        final String jsonName;
+        final String typeName;
+        final FieldKind kind;
+
+        BoundField(final String javaName, final String jsonName, final String typeName, final FieldKind kind) {
+            this.javaName = javaName;
+            this.jsonName = jsonName;
+            this.typeName = typeName;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * <p>オブジェクトを作成します。</p>
+     */
+    public BaasdayProcessor() {
+    }
+
+    public Set<String> getSupportedAnnotationTypes() {
+        return new HashSet<String>(Arrays.asList(COLLECTION_ANNOTATION, FIELD_ANNOTATION));
+    }
+
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnvironment) {
+        for (final TypeElement annotation : annotations) {
+            if (!annotation.getQualifiedName().contentEquals(COLLECTION_ANNOTATION)) continue;
+            for (final Element element : roundEnvironment.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() != ElementKind.CLASS) {
+                    this.error(element, "@BaasdayCollection can only be applied to a class.");
+                    continue;
+                }
+                this.generate((TypeElement) element);
+            }
+        }
+        return true;
+    }
+
+    private void error(final Element element, final String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String annotationValue(final Element element, final String annotationName) {
+        for (final AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) continue;
+            for (final Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return null;
+    }
+
+    private FieldKind fieldKind(final TypeMirror type) {
+        switch (type.getKind()) {
+            case INT:
+                return FieldKind.INT;
+            case LONG:
+                return FieldKind.LONG;
+            case DOUBLE:
+                return FieldKind.DOUBLE;
+            case FLOAT:
+                return FieldKind.FLOAT;
+            case BOOLEAN:
+                return FieldKind.BOOLEAN;
+            case DECLARED:
+                break;
+            default:
+                return null;
+        }
+        final String name = this.processingEnv.getTypeUtils().erasure(type).toString();
+        if ("java.lang.String".equals(name)) return FieldKind.STRING;
+        if ("java.lang.Integer".equals(name)) return FieldKind.INTEGER_OBJECT;
+        if ("java.lang.Long".equals(name)) return FieldKind.LONG_OBJECT;
+        if ("java.lang.Double".equals(name)) return FieldKind.DOUBLE_OBJECT;
+        if ("java.lang.Float".equals(name)) return FieldKind.FLOAT_OBJECT;
+        if ("java.lang.Boolean".equals(name)) return FieldKind.BOOLEAN_OBJECT;
+        if ("java.util.Date".equals(name)) return FieldKind.DATE;
+        if ("java.util.Map".equals(name)) return FieldKind.MAP;
+        if ("java.util.List".equals(name)) return FieldKind.LIST;
+        if ("java.lang.Object".equals(name)) return FieldKind.OBJECT;
+        return null;
+    }
+
+    private static boolean hasAccessibleNoArgConstructor(final TypeElement type) {
+        final List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        for (final ExecutableElement constructor : constructors) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) return true;
+        }
+        return constructors.isEmpty();
+    }
+
+    private List<TypeElement> typeHierarchy(final TypeElement type) {
+        final List<TypeElement> hierarchy = new ArrayList<TypeElement>();
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            hierarchy.add(0, current);
+            final TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) this.processingEnv.getTypeUtils().asElement(superclass) : null;
+        }
+        return hierarchy;
+    }
+
+    private List<BoundField> boundFields(final TypeElement type) {
+        final List<BoundField> fields = new ArrayList<BoundField>();
+        final Set<String> javaNames = new HashSet<String>();
+        final Set<String> jsonNames = new HashSet<String>();
+        final PackageElement packageElement = this.processingEnv.getElementUtils().getPackageOf(type);
+        boolean valid = true;
+        for (final TypeElement declaringType : this.typeHierarchy(type)) {
+            final boolean inherited = declaringType != type;
+            final boolean samePackage = this.processingEnv.getElementUtils().getPackageOf(declaringType).equals(packageElement);
+            for (final VariableElement field : ElementFilter.fieldsIn(declaringType.getEnclosedElements())) {
+                final Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) continue;
+                final Element reported = inherited ? type : field;
+                final String suffix = inherited ? ": " + declaringType.getQualifiedName() + "." + field.getSimpleName() : "";
+                if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+                    this.error(reported, "A field bound by @BaasdayCollection must not be private or final. Mark it transient to exclude it" + (inherited ? suffix : "."));
+                    valid = false;
+                    continue;
+                }
+                if (!samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+                    this.error(reported, "A field inherited from another package must be public to be bound by @BaasdayCollection. Mark it transient to exclude it" + suffix);
+                    valid = false;
+                    continue;
+                }
+                final String javaName = field.getSimpleName().toString();
+                if (!javaNames.add(javaName)) {
+                    this.error(reported, "A field bound by @BaasdayCollection must not hide an inherited field: " + javaName);
+                    valid = false;
+                    continue;
+                }
+                final TypeMirror fieldType = this.processingEnv.getTypeUtils().asMemberOf((DeclaredType) type.asType(), field);
+                final FieldKind kind = this.fieldKind(fieldType);
+                if (kind == null) {
+                    this.error(reported, "Unsupported field type for @BaasdayCollection: " + fieldType + suffix);
+                    valid = false;
+                    continue;
+                }
+                final String annotatedName = annotationValue(field, FIELD_ANNOTATION);
+                final String jsonName = annotatedName == null ? javaName : annotatedName;
+                if (!jsonNames.add(jsonName)) {
+                    this.error(reported, "Duplicate JSON field name: " + jsonName);
+                    valid = false;
+                    continue;
+                }
+                fields.add(new BoundField(javaName, jsonName, fieldType.toString(), kind));
+            }
+        }
+        return valid ? fields : null;
+    }
+
+    private static String bindingSimpleName(final TypeElement type) {
+        final StringBuilder builder = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing.getKind() != ElementKind.PACKAGE) {
+            builder.insert(0, enclosing.getSimpleName() + "_");
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return builder.append("Binding").toString();
+    }
+
+    private static String quote(final String string) {
+        final StringBuilder builder = new StringBuilder(string.length() + 2).append('"');
+        for (int index = 0; index < string.length(); ++index) {
+            final char c = string.charAt(index);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20 || c > 0x7e) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String readStatement(final BoundField field) {
+        final String target = "object." + field.javaName;
+        switch (field.kind) {
+            case STRING:
+                return target + " = input.nextString();";
+            case INT:
+                return target + " = input.nextInt();";
+            case LONG:
+                return target + " = input.nextLong();";
+            case DOUBLE:
+                return target + " = input.nextDouble();";
+            case FLOAT:
+                return target + " = (float) input.nextDouble();";
+            case BOOLEAN:
+                return target + " = input.nextBoolean();";
+            case INTEGER_OBJECT:
+                return "final Number value = input.nextNumber();\n                " + target + " = value == null ? null : Integer.valueOf(value.intValue());";
+            case LONG_OBJECT:
+                return "final Number value = input.nextNumber();\n                " + target + " = value == null ? null : Long.valueOf(value.longValue());";
+            case DOUBLE_OBJECT:
+                return "final Number value = input.nextNumber();\n                " + target + " = value == null ? null : Double.valueOf(value.doubleValue());";
+            case FLOAT_OBJECT:
+                return "final Number value = input.nextNumber();\n                " + target + " = value == null ? null : Float.valueOf(value.floatValue());";
+            case BOOLEAN_OBJECT:
+                return target + " = input.nextBooleanObject();";
+            case DATE:
+                return target + " = input.nextDate();";
+            case MAP:
+                return target + " = (" + field.typeName + ") (java.util.Map) input.nextMap();";
+            case LIST:
+                return target + " = (" + field.typeName + ") (java.util.List) input.nextList();";
+            default:
+                return target + " = input.nextValue();";
+        }
+    }
+
+    private static String writeExpression(final BoundField field) {
+        final String source = "object." + field.javaName;
+        return field.kind == FieldKind.FLOAT ? "Float.valueOf(" + source + ")" : source;
+    }
+
+    private void generate(final TypeElement type) {
+        if (type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT)) {
+            this.error(type, "A class annotated with @BaasdayCollection must not be private or abstract.");
+            return;
+        }
+        if (type.getEnclosingElement().getKind() != ElementKind.PACKAGE && !type.getModifiers().contains(Modifier.STATIC)) {
+            this.error(type, "A nested class annotated with @BaasdayCollection must be static.");
+            return;
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            this.error(type, "A class annotated with @BaasdayCollection must not be generic.");
+            return;
+        }
+        final boolean constructible = hasAccessibleNoArgConstructor(type);
+        if (!constructible) this.error(type, "A class annotated with @BaasdayCollection must have a non-private constructor without arguments.");
+        final List<BoundField> fields = this.boundFields(type);
+        if (fields == null || !constructible) return;
+        final String collectionName = annotationValue(type, COLLECTION_ANNOTATION);
+        final PackageElement packageElement = this.processingEnv.getElementUtils().getPackageOf(type);
+        final String packageName = packageElement.isUnnamed() ? null : packageElement.getQualifiedName().toString();
+        final String bindingName = bindingSimpleName(type);
+        final String typeName = type.getQualifiedName().toString();
+
+        final StringBuilder source = new StringBuilder();
+        source.append("// Generated by com.baasday.processor.BaasdayProcessor. Do not edit.\n");
+        if (packageName != null) source.append("package ").append(packageName).append(";\n");
+        source.append("\n");
+        source.append("public final class ").append(bindingName).append(" implements com.baasday.ObjectBinding<").append(typeName).append("> {\n");
+        source.append("    public static final ").append(bindingName).append(" INSTANCE = new ").append(bindingName).append("();\n\n");
+        source.append("    private ").append(bindingName).append("() {\n    }\n\n");
+        source.append("    public String getCollectionName() {\n        return ").append(quote(collectionName)).append(";\n    }\n\n");
+        source.append("    public String getId(final ").append(typeName).append(" object) {\n");
+        String idField = null;
+        for (final BoundField field : fields) {
+            if (ID_FIELD.equals(field.jsonName) && field.kind == FieldKind.STRING) idField = field.javaName;
+        }
+        source.append(idField == null ? "        return null;\n" : "        return object." + idField + ";\n");
+        source.append("    }\n\n");
+        source.append("    @SuppressWarnings(\"unchecked\")\n");
+        source.append("    public ").append(typeName).append(" read(final com.baasday.JsonInput input) throws com.baasday.BaasdayException {\n");
+        source.append("        final ").append(typeName).append(" object = new ").append(typeName).append("();\n");
+        source.append("        input.beginObject();\n");
+        source.append("        while (input.hasNext()) {\n");
+        source.append("            final String name = input.nextName();\n");
+        source.append("            ");
+        for (final BoundField field : fields) {
+            source.append("if (").append(quote(field.jsonName)).append(".equals(name)) {\n");
+            source.append("                ").append(readStatement(field)).append("\n");
+            source.append("            } else ");
+        }
+        source.append("{\n                input.skipValue();\n            }\n");
+        source.append("        }\n");
+        source.append("        input.endObject();\n");
+        source.append("        return object;\n");
+        source.append("    }\n\n");
+        source.append("    public void write(final ").append(typeName).append(" object, final com.baasday.JsonOutput output) {\n");
+        source.append("        output.beginObject();\n");
+        for (final BoundField field : fields) {
+            if (field.jsonName.startsWith("_")) continue;
+            source.append("        output.name(").append(quote(field.jsonName)).append(").value(").append(writeExpression(field)).append(");\n");
+        }
+        source.append("        output.endObject();\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        try {
+            final JavaFileObject file = this.processingEnv.getFiler().createSourceFile(packageName == null ? bindingName : packageName + "." + bindingName, type);
+            final Writer writer = file.openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (final IOException exception) {
+            this.error(type, "Could not write " + bindingName + ": " + exception.getMessage());
+        }
+    }
+}
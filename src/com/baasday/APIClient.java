@@ -1,20 +1,27 @@
 package com.baasday;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLEncoder;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 class APIClient {
     private String requestMethod;
     private String path;
-    private Map<String, Object> requestParameters;
+    private String queryString;
     private Map<String, Object> requestJson;
+    private String requestJsonString;
+    private Map<String, String> headers;
+    private Set<String> responseFields;
+    private boolean longPoll;
 
     APIClient requestMethod(final String requestMethod) {
         this.requestMethod = requestMethod;
@@ -27,12 +34,21 @@ class APIClient {
     }
 
     APIClient requestParameters(final Map<String, Object> query) {
-        this.requestParameters = query;
+        this.queryString = query == null ? null : Query.queryString(query);
+        this.longPoll = query != null && query.get("wait") instanceof Number && ((Number) query.get("wait")).intValue() > 0;
         return this;
     }
 
     APIClient query(final Query query) {
-        return this.requestParameters(query == null ? null : query.toRequestParameters());
+        this.queryString = query == null ? null : query.toQueryString();
+        this.longPoll = query != null && query.hasWaitSeconds() && query.waitSeconds() > 0;
+        return this;
+    }
+
+    APIClient query(final CompiledQuery query) {
+        this.queryString = query == null ? null : query.toQueryString();
+        this.longPoll = query != null && query.isLongPoll();
+        return this;
     }
 
     APIClient requestJson(final Map<String, Object> requestJson) {
@@ -40,6 +56,22 @@ class APIClient {
         return this;
     }
 
+    APIClient requestJsonString(final String requestJsonString) {
+        this.requestJsonString = requestJsonString;
+        return this;
+    }
+
+    APIClient header(final String name, final String value) {
+        if (this.headers == null) this.headers = new LinkedHashMap<String, String>();
+        this.headers.put(name, value);
+        return this;
+    }
+
+    APIClient responseFields(final String ... fields) {
+        this.responseFields = new HashSet<String>(Arrays.asList(fields));
+        return this;
+    }
+
     APIClient get(final String path) {
         return this.requestMethod("GET").path(path);
     }
@@ -53,60 +85,80 @@ class APIClient {
     }
 
     APIClient delete(final String path) {
-        return this.requestMethod("delete").path(path);
+        return this.requestMethod("DELETE").path(path);
     }
 
-    private static void setAuthenticationHeaders(final HttpURLConnection connection) {
-        connection.setRequestProperty("X-Baasday-Application-Id", Baasday.getApplicationId());
-        connection.setRequestProperty("X-Baasday-Application-Api-Key", Baasday.getApiKey());
+    private static void setAuthenticationHeaders(final Map<String, String> headers) {
+        headers.put("X-Baasday-Application-Id", Baasday.getApplicationId());
+        headers.put("X-Baasday-Application-Api-Key", Baasday.getApiKey());
         if (Baasday.getUserAuthenticationKey() != null) {
-            connection.setRequestProperty("X-Baasday-Application-User-Authentication-Key", Baasday.getUserAuthenticationKey());
-        }
-    }
-
-    private static String queryString(final Map<String, Object> parameters) {
-        final StringBuilder builder = new StringBuilder();
-        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-            builder.append(URLEncoder.encode(entry.getKey()));
-            builder.append("=");
-            builder.append(URLEncoder.encode(entry.getValue().toString()));
+            headers.put("X-Baasday-Application-User-Authentication-Key", Baasday.getUserAuthenticationKey());
         }
-        return builder.toString();
     }
 
-    HttpURLConnection createConnection() throws BaasdayException {
+    Transport.Request createRequest() throws BaasdayException {
         String path;
-        if (this.requestParameters != null) {
-            path = this.path + "?" + queryString(this.requestParameters);
+        if (this.queryString != null && this.queryString.length() > 0) {
+            path = this.path + "?" + this.queryString;
         } else {
             path = this.path;
         }
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        setAuthenticationHeaders(headers);
+        if (this.headers != null) headers.putAll(this.headers);
+        byte[] body = null;
+        if (this.requestJson != null || this.requestJsonString != null) {
+            headers.put("Content-Type", "application/json");
+            body = (this.requestJsonString != null ? this.requestJsonString : Utility.jsonString(this.requestJson)).getBytes(Utility.UTF_8);
+        }
         try {
-            final HttpURLConnection connection = (HttpURLConnection) new URL(Baasday.getApiURLRoot() + path).openConnection();
-            setAuthenticationHeaders(connection);
-            connection.setRequestMethod(this.requestMethod);
-            if (this.requestJson != null) {
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.getOutputStream().write(Utility.jsonString(this.requestJson).getBytes());
-            }
-            return connection;
+            return new Transport.Request(this.requestMethod, new URL(Baasday.getApiURLRoot() + path), headers, body);
         } catch (final MalformedURLException exception) {
             throw new BaasdayException(exception);
-        } catch (final IOException exception) {
-            throw new BaasdayException(exception);
         }
     }
 
+    private static BaasdayException exceptionForErrorResponse(final Transport.Request request, final Transport.Response response) {
+        final int statusCode = response.getStatusCode();
+        String message = "The server returned HTTP status " + statusCode + " for " + request.getMethod() + " " + request.getUrl().getPath();
+        try {
+            final Object error = Utility.mapFromJSONStream(response.getBody(), response.getContentLength()).get("error");
+            if (error != null) message += ": " + error;
+        } catch (final IOException ignored) {
+        } catch (final BaasdayException ignored) {
+        }
+        if (statusCode == HttpURLConnection.HTTP_PRECON_FAILED || statusCode == HttpURLConnection.HTTP_CONFLICT) return new BaasdayConflictException(message, statusCode);
+        return new BaasdayException(message, statusCode);
+    }
+
     Map<String, Object> doRequest() throws BaasdayException {
-        final HttpURLConnection connection = this.createConnection();
-        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        return this.doRequest(null);
+    }
+
+    <R> R doRequest(final Utility.JSONHandler<R> handler) throws BaasdayException {
+        final RequestScheduler.Ticket ticket = RequestScheduler.acquire(this.path, this.longPoll);
         try {
-            final InputStream inputStream = connection.getInputStream();
-            Utility.copy(inputStream, byteArrayOutputStream);
-            inputStream.close();
-            return Utility.mapFromJSONString(new String(byteArrayOutputStream.toByteArray()));
-        } catch (final IOException exception) {
-            throw new BaasdayException(exception);
+            final Transport.Request request = this.createRequest();
+            final Transport.Response response;
+            try {
+                response = Baasday.getTransport().execute(request);
+            } catch (final IOException exception) {
+                throw new BaasdayException(exception);
+            }
+            try {
+                if (response.getStatusCode() >= 400) throw exceptionForErrorResponse(request, response);
+                if (!"GET".equals(this.requestMethod)) CountCache.invalidate(this.path);
+                if (handler != null) return Utility.readJSONStream(response.getBody(), response.getContentLength(), handler);
+                @SuppressWarnings("unchecked")
+                final R result = (R) Utility.mapFromJSONStream(response.getBody(), response.getContentLength(), this.responseFields);
+                return result;
+            } catch (final IOException exception) {
+                throw new BaasdayException(exception);
+            } finally {
+                response.close();
+            }
+        } finally {
+            RequestScheduler.release(ticket);
         }
     }
 
@@ -114,11 +166,56 @@ class APIClient {
         public abstract T createFromAPIResult(final Map<String, Object> values) throws BaasdayException;
     }
 
+    static interface StreamingObjectFactory<T> extends BaasdayObjectFactory<T> {
+        public T createFromJson(final JsonInput input) throws BaasdayException;
+    }
+
+    static <T> Utility.JSONHandler<T> objectHandler(final StreamingObjectFactory<T> factory) {
+        return new Utility.JSONHandler<T>() {
+            public T handle(final CharBuffer json) throws BaasdayException {
+                final JsonInput input = new JsonInput(json);
+                final T result = factory.createFromJson(input);
+                input.endDocument();
+                return result;
+            }
+        };
+    }
+
+    private static <T> Utility.JSONHandler<ListResult<T>> listHandler(final StreamingObjectFactory<T> factory) {
+        return new Utility.JSONHandler<ListResult<T>>() {
+            public ListResult<T> handle(final CharBuffer json) throws BaasdayException {
+                final JsonInput input = new JsonInput(json);
+                Number count = null;
+                List<T> contents = null;
+                input.beginObject();
+                while (input.hasNext()) {
+                    final String name = input.nextName();
+                    if ("_count".equals(name)) {
+                        count = input.nextNumber();
+                    } else if ("_contents".equals(name) && !input.peekNull()) {
+                        contents = new ArrayList<T>();
+                        input.beginArray();
+                        while (input.hasNext()) contents.add(factory.createFromJson(input));
+                        input.endArray();
+                    } else {
+                        input.skipValue();
+                    }
+                }
+                input.endObject();
+                input.endDocument();
+                if (count == null) throw new BaasdayException("A JSON returned by the server does not contain the field \"_count\".");
+                if (contents == null) throw new BaasdayException("A JSON returned by the server does not contain the field \"_contents\".");
+                return new ListResult<T>(count.intValue(), contents);
+            }
+        };
+    }
+
     static Map<String, Object> create(final String path, final Map<String, Object> values) throws BaasdayException {
         return new APIClient().post(path).requestJson(values).doRequest();
     }
 
     static <T> T create(final String path, final Map<String, Object> values, final BaasdayObjectFactory<T> factory) throws BaasdayException {
+        if (factory instanceof StreamingObjectFactory) return new APIClient().post(path).requestJson(values).doRequest(objectHandler((StreamingObjectFactory<T>) factory));
         return factory.createFromAPIResult(create(path, values));
     }
 
@@ -127,10 +224,11 @@ class APIClient {
     }
 
     static <T> T fetch(final String path, final BaasdayObjectFactory<T> factory) throws BaasdayException {
+        if (factory instanceof StreamingObjectFactory) return new APIClient().get(path).doRequest(objectHandler((StreamingObjectFactory<T>) factory));
         return factory.createFromAPIResult(fetch(path));
     }
 
-    private static int countFromListAPIResult(final Map<String, Object> result) throws BaasdayException {
+    static int countFromListAPIResult(final Map<String, Object> result) throws BaasdayException {
         if (!result.containsKey(("_count"))) throw new BaasdayException("A JSON returned by the server does not contain the field \"_count\".");
         final Object count = result.get("_count");
         if (!(count instanceof Number)) throw new BaasdayException("A value of the field \"_count\" in a JSON returned by the server is not a number.");
@@ -147,12 +245,25 @@ class APIClient {
     }
 
     static ListResult<Map<String, Object>> fetchAll(final String path, final Query query) throws BaasdayException {
-        final Map<String, Object> result = new APIClient().get(path).query(query).doRequest();
+        return fetchAll(new APIClient().get(path).query(query));
+    }
+
+    private static ListResult<Map<String, Object>> fetchAll(final APIClient client) throws BaasdayException {
+        final Map<String, Object> result = client.doRequest();
         return new ListResult<Map<String, Object>>(countFromListAPIResult(result), contentsFromListAPIResult(result));
     }
 
     static <T> ListResult<T> fetchAll(final String path, final Query query, final BaasdayObjectFactory<T> factory) throws BaasdayException {
-        return fetchAll(path, query).convertContents(new ListResult.ContentConverter<Map<String, Object>, T>() {
+        return fetchAll(new APIClient().get(path).query(query), factory);
+    }
+
+    static <T> ListResult<T> fetchAll(final String path, final CompiledQuery query, final BaasdayObjectFactory<T> factory) throws BaasdayException {
+        return fetchAll(new APIClient().get(path).query(query), factory);
+    }
+
+    private static <T> ListResult<T> fetchAll(final APIClient client, final BaasdayObjectFactory<T> factory) throws BaasdayException {
+        if (factory instanceof StreamingObjectFactory) return client.doRequest(listHandler((StreamingObjectFactory<T>) factory));
+        return fetchAll(client).convertContents(new ListResult.ContentConverter<Map<String, Object>, T>() {
             public T convert(final Map<String, Object> sourceContent) throws BaasdayException {
                 return factory.createFromAPIResult(sourceContent);
             }
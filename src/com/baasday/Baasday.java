@@ -18,6 +18,8 @@ public final class Baasday {
     private static String userAuthenticationKey;
     private static String deviceId;
     private static String apiURLRoot = API_URL_ROOT;
+    private static JsonCodec jsonCodec = new DefaultJsonCodec();
+    private static Transport transport = new HttpURLConnectionTransport();
 
     private Baasday() {
     }
@@ -85,4 +87,69 @@ public final class Baasday {
     public static void setApiUrlRoot(final String apiURLRoot) {
         Baasday.apiURLRoot = apiURLRoot;
     }
+
+    /**
+     * <p>JSONの変換処理を設定します。通常は変更する必要はありません。</p>
+     * @param jsonCodec JSONの変換処理。nullの場合は既定の変換処理(DefaultJsonCodec)に戻します
+     * @see JsonCodec
+     */
+    public static void setJsonCodec(final JsonCodec jsonCodec) {
+        Baasday.jsonCodec = jsonCodec == null ? new DefaultJsonCodec() : jsonCodec;
+    }
+
+    static JsonCodec getJsonCodec() {
+        return Baasday.jsonCodec;
+    }
+
+    /**
+     * <p>baasdayサーバとの通信処理を設定します。通常は変更する必要はありません。</p>
+     * @param transport 通信処理。nullの場合は既定の通信処理(HttpURLConnectionTransport)に戻します
+     * @see Transport
+     */
+    public static void setTransport(final Transport transport) {
+        Baasday.transport = transport == null ? new HttpURLConnectionTransport() : transport;
+    }
+
+    static Transport getTransport() {
+        return Baasday.transport;
+    }
+
+    /**
+     * <p>Item#countとItem#existsが問い合わせた件数を保持する時間を設定します。</p>
+     * <p>設定すると、保持している結果はすべて破棄されます。0を指定すると結果は保持されず、同時に行われた問い合わせがまとめられるだけになります。</p>
+     * @param countCacheMillis 保持する時間(ミリ秒)。初期値は2000です
+     * @see Item#count(String, Query)
+     */
+    public static void setCountCacheMillis(final long countCacheMillis) {
+        CountCache.setTtlMillis(countCacheMillis);
+    }
+
+    /**
+     * <p>ライブラリがバックグラウンドで行う処理の実行方法を設定します。</p>
+     * <p>すでに実行中の処理はそれまでの方法で最後まで実行されます。</p>
+     * @param mode 実行方法
+     * @param poolSize BOUNDED_POOLで実行する場合、または仮想スレッドを利用できない場合のスレッド数。初期値は8です
+     * @see ExecutionMode
+     */
+    public static void setExecutionMode(final ExecutionMode mode, final int poolSize) {
+        BackgroundExecutor.configure(mode == null ? ExecutionMode.BOUNDED_POOL : mode, poolSize);
+    }
+
+    /**
+     * <p>ライブラリがバックグラウンドで行う処理の実行方法を設定します。</p>
+     * <p>これはsetExecutionMode(mode, 8)と同じです。</p>
+     * @param mode 実行方法
+     * @see ExecutionMode
+     */
+    public static void setExecutionMode(final ExecutionMode mode) {
+        setExecutionMode(mode, BackgroundExecutor.DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * <p>バックグラウンドの処理が実際に仮想スレッドで実行されるかどうかを返します。</p>
+     * @return 仮想スレッドで実行される場合はtrue
+     */
+    public static boolean isUsingVirtualThreads() {
+        return BackgroundExecutor.usesVirtualThreads();
+    }
 }
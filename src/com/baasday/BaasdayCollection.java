@@ -0,0 +1,37 @@
+package com.baasday;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>クラスをコレクション内のアイテムに対応付けます。</p>
+ * <p>このアノテーションを付けたクラスに対して、アノテーションプロセッサ(com.baasday.processor.BaasdayProcessor)が同じパッケージにクラス名の後ろにBindingを付けた名前のObjectBindingの実装を生成します。</p>
+ * <p>クラスはprivateでない引数なしのコンストラクタを持つ必要があります。staticとtransientを除くすべてのフィールドがJSONのフィールドに対応付けられ、フィールドはprivateであってはいけません。使えるフィールドの型は、String、int、long、double、float、boolean、それらのラッパークラス、Date、Map、List、Objectです。</p>
+ * <pre>
+ * &#064;BaasdayCollection("books")
+ * public class Book {
+ *     &#064;BaasdayField("_id") String id;
+ *     String title;
+ *     int pages;
+ * }
+ *
+ * final TypedCollection&lt;Book&gt; books = new TypedCollection&lt;Book&gt;(BookBinding.INSTANCE);
+ * final ListResult&lt;Book&gt; result = books.fetchAll(new Query().order("title"));
+ * </pre>
+ * @see BaasdayField
+ * @see ObjectBinding
+ * @see TypedCollection
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface BaasdayCollection {
+    /**
+     * <p>コレクション名です。</p>
+     * @return コレクション名
+     */
+    String value();
+}
@@ -0,0 +1,18 @@
+package com.baasday;
+
+/**
+ * <p>条件付きの更新で、オブジェクトが最後に取得した時点から他のクライアントによって更新されていた場合にスローされます。</p>
+ * <p>最新の値を取得し直してから更新をやり直してください。Item#updateWithRetryを使うとこの手順を自動で行えます。</p>
+ * @see Item#updateIfUnmodified(java.util.Map)
+ * @see Item#updateWithRetry(UpdateMerger, int)
+ */
+public class BaasdayConflictException extends BaasdayException {
+    /**
+     * <p>メッセージとbaasdayサーバが返したHTTPステータスコードを指定してオブジェクトを作成します。</p>
+     * @param message メッセージ
+     * @param statusCode HTTPステータスコード
+     */
+    public BaasdayConflictException(final String message, final int statusCode) {
+        super(message, statusCode);
+    }
+}
@@ -4,6 +4,8 @@ package com.baasday;
  * <p>baasdayサーバからエラーが返された場合や、オブジェクトの値の取得に失敗した場合などにスローされます。</p>
  */
 public class BaasdayException extends Exception {
+    private final int statusCode;
+
     /**
      * <p>メッセージとエラーの原因となった例外を指定してオブジェクトを作成します。</p>
      * @param message メッセージ
@@ -11,6 +13,7 @@ public class BaasdayException extends Exception {
      */
     public BaasdayException(final String message, final Throwable cause) {
         super(message, cause);
+        this.statusCode = 0;
     }
 
     /**
@@ -19,6 +22,7 @@ public class BaasdayException extends Exception {
      */
     public BaasdayException(final Throwable cause) {
         super(cause);
+        this.statusCode = 0;
     }
 
     /**
@@ -27,5 +31,24 @@ public class BaasdayException extends Exception {
      */
     public BaasdayException(final String message) {
         super(message);
+        this.statusCode = 0;
+    }
+
+    /**
+     * <p>メッセージとbaasdayサーバが返したHTTPステータスコードを指定してオブジェクトを作成します。</p>
+     * @param message メッセージ
+     * @param statusCode HTTPステータスコード
+     */
+    public BaasdayException(final String message, final int statusCode) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * <p>baasdayサーバが返したHTTPステータスコードを返します。</p>
+     * @return HTTPステータスコード。サーバからエラーが返されたのではない場合は0
+     */
+    public int getStatusCode() {
+        return this.statusCode;
     }
 }
@@ -0,0 +1,23 @@
+package com.baasday;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>BaasdayCollectionアノテーションを付けたクラスのフィールドに、JSONのフィールド名を指定します。</p>
+ * <p>このアノテーションがないフィールドは、Javaのフィールド名と同じ名前のJSONのフィールドに対応付けられます。"_id"、"_createdAt"、"_updatedAt"のように"_"で始まる名前のフィールドは読み出しだけに使われ、baasdayサーバには送られません。</p>
+ * @see BaasdayCollection
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface BaasdayField {
+    /**
+     * <p>JSONのフィールド名です。</p>
+     * @return JSONのフィールド名
+     */
+    String value();
+}
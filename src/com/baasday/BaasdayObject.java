@@ -1,8 +1,17 @@
 package com.baasday;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * <p>baasdayサーバ上に保存されるオブジェクトの共通の基底クラスです。フィールドの値の取得、baasday上のデータの更新、削除の機能を提供します。</p>
@@ -10,6 +19,12 @@ import java.util.Map;
  * <p>フィールドの値はNumber(数値)、String(文字列)、Boolean(ブール)、Date(日付)、List、Map、nullで表されます。</p>
  */
 public abstract class BaasdayObject extends BasicObject {
+    private final Object pendingLock = new Object();
+    private final List<Map<String, Object>> pendingUpdates = new ArrayList<Map<String, Object>>();
+    private final LinkedList<FutureTask<Void>> pendingRequests = new LinkedList<FutureTask<Void>>();
+    private Map<String, Object> confirmedValues;
+    private boolean sendingPendingRequests;
+
     BaasdayObject(final Map<String, Object> values) {
         super(values);
     }
@@ -51,6 +66,148 @@ public abstract class BaasdayObject extends BasicObject {
         this.setValues(new APIClient().put(this.apiPath()).requestJson(values).doRequest());
     }
 
+    private static String httpDate(final Date date) {
+        final SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(date);
+    }
+
+    void updateIfUnmodified(final Map<String, Object> values) throws BaasdayException {
+        final Date updatedAt = this.getUpdatedAt();
+        if (updatedAt == null) throw new BaasdayException("The object does not have the field \"_updatedAt\" to use as a precondition.");
+        this.setValues(new APIClient().put(this.apiPath())
+                .header("If-Unmodified-Since", httpDate(updatedAt))
+                .header("X-Baasday-If-Updated-At", RFC3339.format(updatedAt.getTime()))
+                .requestJson(values).doRequest());
+    }
+
+    void refresh() throws BaasdayException {
+        this.setValues(APIClient.fetch(this.apiPath()));
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends BaasdayObject> boolean retryConditionalUpdate(final UpdateMerger<T> merger, final int maxAttempts) throws BaasdayException {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be positive.");
+        for (int attempt = 1; ; ++attempt) {
+            final Map<String, Object> values = merger.merge((T) this);
+            if (values == null) return false;
+            try {
+                this.updateIfUnmodified(values);
+                return true;
+            } catch (final BaasdayConflictException exception) {
+                if (attempt >= maxAttempts) throw exception;
+            }
+            this.refresh();
+        }
+    }
+
+    void valuesChanged() throws BaasdayException {
+    }
+
+    Future<Void> updateOptimistically(final Map<String, Object> values, final boolean returnMinimal) throws BaasdayException {
+        final FutureTask<Void> request = new FutureTask<Void>(new Callable<Void>() {
+            public Void call() throws BaasdayException {
+                BaasdayObject.this.sendPendingUpdate(values, returnMinimal);
+                return null;
+            }
+        });
+        boolean startSending = false;
+        synchronized (this.pendingLock) {
+            final Map<String, Object> applied = UpdateApplier.apply(this.getValues(), values);
+            if (this.pendingUpdates.isEmpty()) this.confirmedValues = this.getValues();
+            this.pendingUpdates.add(values);
+            this.setValues(applied);
+            this.pendingRequests.add(request);
+            if (!this.sendingPendingRequests) {
+                this.sendingPendingRequests = true;
+                startSending = true;
+            }
+        }
+        this.valuesChanged();
+        if (startSending) {
+            try {
+                BackgroundExecutor.get().execute(new Runnable() {
+                    public void run() {
+                        BaasdayObject.this.drainPendingRequests();
+                    }
+                });
+            } catch (final RuntimeException exception) {
+                try {
+                    this.discardPendingRequests();
+                } catch (final BaasdayException ignored) {
+                }
+                throw exception;
+            }
+        }
+        return request;
+    }
+
+    private void discardPendingRequests() throws BaasdayException {
+        synchronized (this.pendingLock) {
+            for (final FutureTask<Void> pending : this.pendingRequests) pending.cancel(false);
+            this.pendingRequests.clear();
+            this.pendingUpdates.clear();
+            if (this.confirmedValues != null) this.setValues(this.confirmedValues);
+            this.confirmedValues = null;
+            this.sendingPendingRequests = false;
+        }
+        this.valuesChanged();
+    }
+
+    private void drainPendingRequests() {
+        while (true) {
+            final FutureTask<Void> request;
+            synchronized (this.pendingLock) {
+                request = this.pendingRequests.poll();
+                if (request == null) {
+                    this.sendingPendingRequests = false;
+                    return;
+                }
+            }
+            request.run();
+        }
+    }
+
+    private void sendPendingUpdate(final Map<String, Object> values, final boolean returnMinimal) throws BaasdayException {
+        Map<String, Object> response = null;
+        BaasdayException failure = null;
+        try {
+            final APIClient client = new APIClient().put(this.apiPath()).requestJson(values);
+            if (returnMinimal) client.header("Prefer", "return=minimal");
+            response = client.doRequest();
+        } catch (final BaasdayException exception) {
+            failure = exception;
+        }
+        synchronized (this.pendingLock) {
+            this.pendingUpdates.remove(0);
+            if (failure == null) {
+                if (returnMinimal) {
+                    Map<String, Object> confirmed;
+                    try {
+                        confirmed = UpdateApplier.apply(this.confirmedValues, values);
+                    } catch (final BaasdayException exception) {
+                        confirmed = new HashMap<String, Object>(this.confirmedValues);
+                    }
+                    confirmed.putAll(response);
+                    this.confirmedValues = confirmed;
+                } else {
+                    this.confirmedValues = response;
+                }
+            }
+            Map<String, Object> current = this.confirmedValues;
+            for (final Map<String, Object> pending : this.pendingUpdates) {
+                try {
+                    current = UpdateApplier.apply(current, pending);
+                } catch (final BaasdayException ignored) {
+                }
+            }
+            this.setValues(current);
+            if (this.pendingUpdates.isEmpty()) this.confirmedValues = null;
+        }
+        this.valuesChanged();
+        if (failure != null) throw failure;
+    }
+
     void delete() throws BaasdayException {
         new APIClient().delete(this.apiPath()).doRequest();
     }
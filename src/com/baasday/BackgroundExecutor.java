@@ -0,0 +1,90 @@
+package com.baasday;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class BackgroundExecutor {
+    private BackgroundExecutor() {
+    }
+
+    static final int DEFAULT_POOL_SIZE = 8;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadLocal<Boolean> POOL_THREAD = new ThreadLocal<Boolean>();
+
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    POOL_THREAD.set(Boolean.TRUE);
+                    runnable.run();
+                }
+            }, "baasday-worker-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static ExecutionMode mode = ExecutionMode.BOUNDED_POOL;
+    private static int poolSize = DEFAULT_POOL_SIZE;
+    private static ExecutorService executor;
+
+    static synchronized void configure(final ExecutionMode mode, final int poolSize) {
+        if (poolSize < 1) throw new IllegalArgumentException("poolSize must be positive.");
+        if (mode == BackgroundExecutor.mode && poolSize == BackgroundExecutor.poolSize) return;
+        BackgroundExecutor.mode = mode;
+        BackgroundExecutor.poolSize = poolSize;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    static synchronized ExecutionMode getMode() {
+        return mode;
+    }
+
+    static synchronized int getPoolSize() {
+        return poolSize;
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            final Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (final Exception exception) {
+            return null;
+        } catch (final LinkageError error) {
+            return null;
+        }
+    }
+
+    private static ExecutorService createBoundedPool() {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), THREAD_FACTORY);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    static boolean isPoolThread() {
+        return POOL_THREAD.get() != null;
+    }
+
+    static synchronized boolean usesVirtualThreads() {
+        return get() != null && mode == ExecutionMode.VIRTUAL_THREADS && !(executor instanceof ThreadPoolExecutor);
+    }
+
+    static synchronized ExecutorService get() {
+        if (executor == null) {
+            if (mode == ExecutionMode.VIRTUAL_THREADS) executor = createVirtualThreadExecutor();
+            if (executor == null) executor = createBoundedPool();
+        }
+        return executor;
+    }
+}
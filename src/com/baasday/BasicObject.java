@@ -1,30 +1,48 @@
 package com.baasday;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
 import java.util.Date;
 
+/**
+ * <p>フィールドと値の組を保持するオブジェクトの基底クラスです。</p>
+ * <p>値は変更できないマップとして保持され、更新のたびに新しいマップに丸ごと置き換えられます。そのため、他のスレッドで更新が行われていても、ロックせずに一貫した値を読み出せます。複数のフィールドを同じ時点の値として読み出す場合は、getValuesで得たマップから読み出してください。</p>
+ */
 public abstract class BasicObject {
-    private Map<String, Object> values;
+    private volatile Map<String, Object> values;
 
     BasicObject(final Map<String, Object> values) {
-        this.values = values;
+        this.values = Utility.freezeMap(values);
     }
 
     /**
      * <p>全てのフィールドの値をマップとして返します。</p>
+     * <p>返されるマップはその時点の値のスナップショットで、このオブジェクトが後で更新されても変化しません。マップと、値として含まれるマップやリストは変更できません。値を変更したマップが必要な場合はtoBuilderを利用してください。</p>
      * @return 全てのフィールドの値
+     * @see #toBuilder()
      */
     public Map<String, Object> getValues() {
         return this.values;
     }
 
-    void setValues(final Map<String, Object> values) {
-        this.values = values;
+    /**
+     * <p>全てのフィールドの値をコピーしたValuesBuilderを返します。</p>
+     * @return 値をコピーしたValuesBuilder
+     */
+    public ValuesBuilder toBuilder() {
+        return new ValuesBuilder(this.getValues());
+    }
+
+    synchronized void setValues(final Map<String, Object> values) {
+        this.values = Utility.freezeMap(values);
     }
 
-    void setValue(final String key, final Object value) {
-        this.values.put(key, value);
+    synchronized void setValue(final String key, final Object value) {
+        final Map<String, Object> values = new HashMap<String, Object>(Utility.hashMapCapacity(this.values.size() + 1));
+        values.putAll(this.values);
+        values.put(key, value);
+        this.values = Utility.freezeMap(values);
     }
 
     /**
@@ -162,6 +180,7 @@ public abstract class BasicObject {
 
     /**
      * <p>指定されたフィールドの値を日付として返します。</p>
+     * <p>返される日付は複製なので、変更してもこのオブジェクトには影響しません。</p>
      * @param field フィールド名
      * @return フィールドの値。フィールドが存在しないか値がnullの場合はnull
      * @throws BaasdayException フィールドの値が日付でない場合
@@ -170,6 +189,6 @@ public abstract class BasicObject {
         final Object value = this.get(field);
         if (value == null) return null;
         if (!(value instanceof Date)) throw exceptionForInvalidType(field, "a date");
-        return (Date) value;
+        return new Date(((Date) value).getTime());
     }
 }
@@ -0,0 +1,383 @@
+package com.baasday;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>オブジェクトのフィールドの値(Map、List、String、Number、Boolean、Date、null)を端末に保存するための、コンパクトなバイナリ形式の符号化を提供するクラスです。</p>
+ * <p>JSONの文字列に比べて解析が速く、サイズも小さくなります。整数と日付は可変長で、フィールド名はストリーム内で一度だけ書き出され、二度目以降は番号で参照されます。</p>
+ * <p>Encoderで書き出した値はDecoderで同じ順番に読み出します。ひとつのストリームに複数の値を続けて書き出せます。</p>
+ * <pre>
+ * final BinaryCodec.Encoder encoder = new BinaryCodec.Encoder(outputStream);
+ * for (final Item item : items) encoder.writeValue(item.getValues());
+ * encoder.flush();
+ * </pre>
+ */
+public final class BinaryCodec {
+    private BinaryCodec() {
+    }
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC_0 = 'B';
+    private static final int MAGIC_1 = 'D';
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int TAG_NULL = 0x00;
+    private static final int TAG_FALSE = 0x01;
+    private static final int TAG_TRUE = 0x02;
+    private static final int TAG_INTEGER = 0x03;
+    private static final int TAG_DOUBLE = 0x04;
+    private static final int TAG_STRING = 0x05;
+    private static final int TAG_DATE = 0x06;
+    private static final int TAG_LIST = 0x07;
+    private static final int TAG_MAP = 0x08;
+
+    private static final int MAX_KEY_TABLE_SIZE = 4096;
+
+    /**
+     * <p>値をバイナリ形式で書き出すクラスです。</p>
+     * <p>書き出した内容は内部でバッファされます。最後にflushメソッドを呼び出してください。このクラスはスレッドセーフではありません。</p>
+     */
+    public static final class Encoder {
+        private final OutputStream outputStream;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private boolean headerWritten;
+        private final Map<String, Integer> keyTable = new HashMap<String, Integer>();
+
+        /**
+         * <p>書き出し先のストリームを指定してオブジェクトを作成します。</p>
+         * @param outputStream 書き出し先
+         */
+        public Encoder(final OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        private void ensureCapacity(final int length) throws IOException {
+            if (this.position + length > this.buffer.length) this.flushBuffer();
+        }
+
+        private void flushBuffer() throws IOException {
+            if (this.position > 0) {
+                this.outputStream.write(this.buffer, 0, this.position);
+                this.position = 0;
+            }
+        }
+
+        private void writeByte(final int value) throws IOException {
+            this.ensureCapacity(1);
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void writeVarint(long value) throws IOException {
+            this.ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void writeZigZag(final long value) throws IOException {
+            this.writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        private void writeBytes(final byte[] bytes) throws IOException {
+            this.writeVarint(bytes.length);
+            if (bytes.length > this.buffer.length) {
+                this.flushBuffer();
+                this.outputStream.write(bytes);
+                return;
+            }
+            this.ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+            this.position += bytes.length;
+        }
+
+        private void writeKey(final String key) throws IOException {
+            final Integer index = this.keyTable.get(key);
+            if (index != null) {
+                this.writeVarint(index + 1);
+                return;
+            }
+            this.writeVarint(0);
+            this.writeBytes(key.getBytes(UTF_8));
+            if (this.keyTable.size() < MAX_KEY_TABLE_SIZE) this.keyTable.put(key, this.keyTable.size());
+        }
+
+        /**
+         * <p>値を書き出します。</p>
+         * @param value 値。Map、List、String、Number、Boolean、Date、BasicObject、nullのいずれかです
+         * @throws IOException 書き出しに失敗した場合
+         * @throws IllegalArgumentException 書き出せない値が含まれている場合
+         */
+        public void writeValue(final Object value) throws IOException {
+            if (!this.headerWritten) {
+                this.headerWritten = true;
+                this.writeByte(MAGIC_0);
+                this.writeByte(MAGIC_1);
+                this.writeByte(FORMAT_VERSION);
+            }
+            this.write(value);
+        }
+
+        private void write(final Object value) throws IOException {
+            if (value == null) {
+                this.writeByte(TAG_NULL);
+            } else if (value instanceof Boolean) {
+                this.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                this.writeByte(TAG_INTEGER);
+                this.writeZigZag(((Number) value).longValue());
+            } else if (value instanceof Number) {
+                this.writeByte(TAG_DOUBLE);
+                final long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                this.ensureCapacity(8);
+                for (int shift = 56; shift >= 0; shift -= 8) this.buffer[this.position++] = (byte) (bits >>> shift);
+            } else if (value instanceof String) {
+                this.writeByte(TAG_STRING);
+                this.writeBytes(((String) value).getBytes(UTF_8));
+            } else if (value instanceof Date) {
+                this.writeByte(TAG_DATE);
+                this.writeZigZag(((Date) value).getTime());
+            } else if (value instanceof List) {
+                final List<?> list = (List<?>) value;
+                this.writeByte(TAG_LIST);
+                this.writeVarint(list.size());
+                for (final Object element : list) this.write(element);
+            } else if (value instanceof Map) {
+                final Map<?, ?> map = (Map<?, ?>) value;
+                this.writeByte(TAG_MAP);
+                this.writeVarint(map.size());
+                for (final Map.Entry<?, ?> entry : map.entrySet()) {
+                    this.writeKey(entry.getKey().toString());
+                    this.write(entry.getValue());
+                }
+            } else if (value instanceof BasicObject) {
+                this.write(((BasicObject) value).getValues());
+            } else {
+                throw new IllegalArgumentException("The value cannot be encoded: " + value.getClass().getName());
+            }
+        }
+
+        /**
+         * <p>バッファされている内容を書き出し先のストリームに書き出します。</p>
+         * @throws IOException 書き出しに失敗した場合
+         */
+        public void flush() throws IOException {
+            this.flushBuffer();
+            this.outputStream.flush();
+        }
+    }
+
+    /**
+     * <p>Encoderで書き出した値を読み出すクラスです。</p>
+     * <p>このクラスはスレッドセーフではありません。</p>
+     */
+    public static final class Decoder {
+        private final InputStream inputStream;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int limit;
+        private boolean headerRead;
+        private final List<String> keyTable = new ArrayList<String>();
+
+        /**
+         * <p>読み出し元のストリームを指定してオブジェクトを作成します。</p>
+         * @param inputStream 読み出し元
+         */
+        public Decoder(final InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+        private boolean fill() throws IOException {
+            if (this.position < this.limit) return true;
+            this.limit = this.inputStream.read(this.buffer, 0, this.buffer.length);
+            this.position = 0;
+            if (this.limit <= 0) {
+                this.limit = 0;
+                return false;
+            }
+            return true;
+        }
+
+        private int readByte() throws IOException {
+            if (!this.fill()) throw new EOFException();
+            return this.buffer[this.position++] & 0xFF;
+        }
+
+        private long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int value = this.readByte();
+                result |= (long) (value & 0x7F) << shift;
+                if ((value & 0x80) == 0) return result;
+            }
+            throw new IOException("Malformed variable-length integer.");
+        }
+
+        private long readZigZag() throws IOException {
+            final long value = this.readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readLength() throws IOException {
+            final long length = this.readVarint();
+            if (length < 0 || length > Integer.MAX_VALUE) throw new IOException("Malformed length: " + length);
+            return (int) length;
+        }
+
+        private String readString() throws IOException {
+            final int length = this.readLength();
+            if (this.limit - this.position >= length) {
+                final String result = new String(this.buffer, this.position, length, UTF_8);
+                this.position += length;
+                return result;
+            }
+            final byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                if (!this.fill()) throw new EOFException();
+                final int count = Math.min(length - offset, this.limit - this.position);
+                System.arraycopy(this.buffer, this.position, bytes, offset, count);
+                this.position += count;
+                offset += count;
+            }
+            return new String(bytes, UTF_8);
+        }
+
+        private String readKey() throws IOException {
+            final int reference = this.readLength();
+            if (reference > 0) {
+                if (reference > this.keyTable.size()) throw new IOException("Unknown key reference: " + reference);
+                return this.keyTable.get(reference - 1);
+            }
+            final String key = this.readString();
+            if (this.keyTable.size() < MAX_KEY_TABLE_SIZE) this.keyTable.add(key);
+            return key;
+        }
+
+        /**
+         * <p>まだ読み出していない値があるかどうかを返します。</p>
+         * @return 値がある場合はtrue
+         * @throws IOException 読み出しに失敗した場合
+         */
+        public boolean hasNext() throws IOException {
+            return this.fill();
+        }
+
+        /**
+         * <p>次の値を読み出します。</p>
+         * <p>整数はintの範囲に収まる場合はInteger、収まらない場合はLongとして返されます。</p>
+         * @return 値
+         * @throws IOException 読み出しに失敗した場合、形式が正しくない場合
+         */
+        public Object readValue() throws IOException {
+            if (!this.headerRead) {
+                if (this.readByte() != MAGIC_0 || this.readByte() != MAGIC_1) throw new IOException("Not a baasday binary stream.");
+                final int version = this.readByte();
+                if (version != FORMAT_VERSION) throw new IOException("Unsupported binary format version: " + version);
+                this.headerRead = true;
+            }
+            return this.read();
+        }
+
+        /**
+         * <p>次の値をマップとして読み出します。</p>
+         * @return マップ
+         * @throws IOException 読み出しに失敗した場合、次の値がマップでない場合
+         */
+        public Map<String, Object> readMap() throws IOException {
+            final Object value = this.readValue();
+            if (!(value instanceof Map)) throw new IOException("The next value is not a map.");
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> result = (Map<String, Object>) value;
+            return result;
+        }
+
+        private Object read() throws IOException {
+            final int tag = this.readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_INTEGER: {
+                    final long value = this.readZigZag();
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int) value;
+                    return value;
+                }
+                case TAG_DOUBLE: {
+                    long bits = 0;
+                    for (int index = 0; index < 8; ++index) bits = (bits << 8) | this.readByte();
+                    return Double.longBitsToDouble(bits);
+                }
+                case TAG_STRING:
+                    return this.readString();
+                case TAG_DATE:
+                    return new Date(this.readZigZag());
+                case TAG_LIST: {
+                    final int size = this.readLength();
+                    final List<Object> list = new ArrayList<Object>(Math.min(size, 1024));
+                    for (int index = 0; index < size; ++index) list.add(this.read());
+                    return list;
+                }
+                case TAG_MAP: {
+                    final int size = this.readLength();
+                    final Map<String, Object> map = new HashMap<String, Object>(Math.min(size, 1024) * 4 / 3 + 1);
+                    for (int index = 0; index < size; ++index) {
+                        final String key = this.readKey();
+                        map.put(key, this.read());
+                    }
+                    return map;
+                }
+                default:
+                    throw new IOException("Unknown tag: " + tag);
+            }
+        }
+    }
+
+    /**
+     * <p>ひとつのマップをバイナリ形式に変換します。</p>
+     * @param values マップ
+     * @return バイナリ形式のバイト列
+     */
+    public static byte[] encode(final Map<String, Object> values) {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        final Encoder encoder = new Encoder(outputStream);
+        try {
+            encoder.writeValue(values);
+            encoder.flush();
+        } catch (final IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * <p>encodeメソッドで変換したバイト列をマップに戻します。</p>
+     * @param bytes バイナリ形式のバイト列
+     * @return マップ
+     * @throws BaasdayException 形式が正しくない場合
+     */
+    public static Map<String, Object> decode(final byte[] bytes) throws BaasdayException {
+        try {
+            return new Decoder(new ByteArrayInputStream(bytes)).readMap();
+        } catch (final IOException exception) {
+            throw new BaasdayException(exception);
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.baasday;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * <p>アプリケーションの起動時に必要なデータの取得をまとめて行うクラスです。</p>
+ * <p>起動時に取得するユーザ、アイテム、更新する端末情報を宣言しておくと、restoreメソッドで前回保存したスナップショットから即座に復元し、refreshメソッドでbaasdayサーバからの取得をすべて並行して行えます。取得した結果は次回の起動のためにスナップショットとして保存されます。</p>
+ * <p>端末情報は、前回baasdayサーバに送った内容から変わっていない場合は送りません。</p>
+ * <pre>
+ * final Bootstrap bootstrap = new Bootstrap(new File(context.getFilesDir(), "baasday-session"));
+ * bootstrap.fetchUser();
+ * bootstrap.fetchItems("news", new Query().order("-_createdAt").limit(20));
+ * bootstrap.updateDevice(device);
+ * final Bootstrap.Session cached = bootstrap.restore();
+ * final Future&lt;Bootstrap.Session&gt; refreshed = bootstrap.refresh();
+ * </pre>
+ */
+public final class Bootstrap {
+    /**
+     * <p>スナップショットの保存先を表すインターフェースです。</p>
+     */
+    public static interface SnapshotStore {
+        /**
+         * <p>保存されているスナップショットを読み込みます。</p>
+         * @return スナップショット。保存されていない場合はnull
+         * @throws IOException 読み込みに失敗した場合
+         */
+        public byte[] load() throws IOException;
+
+        /**
+         * <p>スナップショットを保存します。</p>
+         * @param snapshot スナップショット
+         * @throws IOException 保存に失敗した場合
+         */
+        public void save(final byte[] snapshot) throws IOException;
+    }
+
+    private static final class FileSnapshotStore implements SnapshotStore {
+        private final File file;
+
+        FileSnapshotStore(final File file) {
+            this.file = file;
+        }
+
+        public byte[] load() throws IOException {
+            if (!this.file.exists()) return null;
+            final InputStream inputStream = new FileInputStream(this.file);
+            try {
+                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream((int) this.file.length());
+                Utility.copy(inputStream, outputStream);
+                return outputStream.toByteArray();
+            } finally {
+                inputStream.close();
+            }
+        }
+
+        public void save(final byte[] snapshot) throws IOException {
+            final File temporaryFile = new File(this.file.getPath() + ".tmp");
+            final OutputStream outputStream = new FileOutputStream(temporaryFile);
+            try {
+                outputStream.write(snapshot);
+            } finally {
+                outputStream.close();
+            }
+            if (!temporaryFile.renameTo(this.file)) {
+                this.file.delete();
+                if (!temporaryFile.renameTo(this.file)) throw new IOException("Failed to replace the snapshot file " + this.file);
+            }
+        }
+    }
+
+    /**
+     * <p>起動時に取得したデータを保持するクラスです。</p>
+     */
+    public static final class Session {
+        private final AuthenticatedUser user;
+        private final Map<String, ListResult<Item>> items;
+        private final boolean fromSnapshot;
+
+        Session(final AuthenticatedUser user, final Map<String, ListResult<Item>> items, final boolean fromSnapshot) {
+            this.user = user;
+            this.items = items;
+            this.fromSnapshot = fromSnapshot;
+        }
+
+        /**
+         * <p>ユーザを返します。</p>
+         * @return ユーザ。fetchUserで宣言していない場合やスナップショットに含まれていない場合はnull
+         */
+        public AuthenticatedUser getUser() {
+            return this.user;
+        }
+
+        /**
+         * <p>指定された名前で宣言したアイテムの取得結果を返します。</p>
+         * @param name fetchItemsで指定した名前
+         * @return 取得結果。宣言していない場合やスナップショットに含まれていない場合はnull
+         */
+        public ListResult<Item> getItems(final String name) {
+            return this.items.get(name);
+        }
+
+        /**
+         * <p>このデータがスナップショットから復元されたものかどうかを返します。</p>
+         * @return スナップショットから復元された場合はtrue、baasdayサーバから取得した場合はfalse
+         */
+        public boolean isFromSnapshot() {
+            return this.fromSnapshot;
+        }
+    }
+
+    private static final class ItemsFetch {
+        final String collectionName;
+        final CompiledQuery query;
+
+        ItemsFetch(final String collectionName, final CompiledQuery query) {
+            this.collectionName = collectionName;
+            this.query = query;
+        }
+    }
+
+    private static final String USER_KEY = "user";
+    private static final String ITEMS_KEY = "items";
+    private static final String DEVICE_KEY = "device";
+    private static final String COLLECTION_NAME_KEY = "collectionName";
+
+    private final SnapshotStore store;
+    private final Map<String, ItemsFetch> itemsFetches = new LinkedHashMap<String, ItemsFetch>();
+    private boolean fetchesUser;
+    private Device device;
+    private Map<String, Object> snapshot;
+
+    /**
+     * <p>スナップショットの保存先を指定してオブジェクトを作成します。</p>
+     * @param store スナップショットの保存先
+     */
+    public Bootstrap(final SnapshotStore store) {
+        this.store = store;
+    }
+
+    /**
+     * <p>スナップショットを保存するファイルを指定してオブジェクトを作成します。</p>
+     * @param file スナップショットを保存するファイル
+     */
+    public Bootstrap(final File file) {
+        this(new FileSnapshotStore(file));
+    }
+
+    /**
+     * <p>起動時にAuthenticatedUser#fetchでユーザを取得することを宣言します。</p>
+     * @return このオブジェクト
+     */
+    public Bootstrap fetchUser() {
+        this.fetchesUser = true;
+        return this;
+    }
+
+    /**
+     * <p>起動時にItem#fetchAllでアイテムを取得することを宣言します。</p>
+     * @param name 取得結果を参照するための名前
+     * @param collectionName コレクション名
+     * @param query 抽出条件
+     * @return このオブジェクト
+     */
+    public Bootstrap fetchItems(final String name, final String collectionName, final Query query) {
+        this.itemsFetches.put(name, new ItemsFetch(collectionName, query == null ? null : query.compile()));
+        return this;
+    }
+
+    /**
+     * <p>起動時にItem#fetchAllでアイテムを取得することを宣言します。</p>
+     * <p>これはfetchItems(collectionName, collectionName, query)と同じです。</p>
+     * @param collectionName コレクション名
+     * @param query 抽出条件
+     * @return このオブジェクト
+     */
+    public Bootstrap fetchItems(final String collectionName, final Query query) {
+        return this.fetchItems(collectionName, collectionName, query);
+    }
+
+    /**
+     * <p>起動時にAuthenticatedUser#updateDeviceで端末情報を更新することを宣言します。</p>
+     * <p>前回baasdayサーバに送った端末情報と同じ内容の場合は更新しません。</p>
+     * @param device 端末情報
+     * @return このオブジェクト
+     */
+    public Bootstrap updateDevice(final Device device) {
+        this.device = device;
+        return this;
+    }
+
+    private synchronized Map<String, Object> loadSnapshot() {
+        if (this.snapshot == null) {
+            try {
+                final byte[] bytes = this.store.load();
+                this.snapshot = bytes == null ? new HashMap<String, Object>() : BinaryCodec.decode(bytes);
+            } catch (final IOException exception) {
+                this.snapshot = new HashMap<String, Object>();
+            } catch (final BaasdayException exception) {
+                this.snapshot = new HashMap<String, Object>();
+            }
+        }
+        return this.snapshot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mapValue(final Map<String, Object> values, final String key) {
+        final Object value = values == null ? null : values.get(key);
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+
+    private static Map<String, Object> listResultValues(final String collectionName, final ListResult<Item> result) {
+        final List<Object> contents = new ArrayList<Object>(result.getContents().size());
+        for (final Item item : result.getContents()) contents.add(item.getValues());
+        final Map<String, Object> values = new HashMap<String, Object>();
+        values.put(COLLECTION_NAME_KEY, collectionName);
+        values.put("_count", result.getCount());
+        values.put("_contents", contents);
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ListResult<Item> listResultFromValues(final Map<String, Object> values) throws BaasdayException {
+        final String collectionName = (String) values.get(COLLECTION_NAME_KEY);
+        final List<Item> items = new ArrayList<Item>();
+        for (final Object content : (List<Object>) values.get("_contents")) items.add(new Item(collectionName, (Map<String, Object>) content));
+        return new ListResult<Item>(APIClient.countFromListAPIResult(values), items);
+    }
+
+    /**
+     * <p>前回保存したスナップショットからデータを復元して返します。baasdayサーバへのアクセスは行いません。</p>
+     * <p>スナップショットが存在しない場合や読み込めない場合は、ユーザやアイテムを含まないデータを返します。</p>
+     * @return 復元したデータ
+     */
+    public Session restore() {
+        final Map<String, Object> snapshot = this.loadSnapshot();
+        final Map<String, Object> userValues = this.fetchesUser ? mapValue(snapshot, USER_KEY) : null;
+        final Map<String, Object> itemsSnapshot = mapValue(snapshot, ITEMS_KEY);
+        final Map<String, ListResult<Item>> items = new HashMap<String, ListResult<Item>>();
+        for (final String name : this.itemsFetches.keySet()) {
+            final Map<String, Object> values = mapValue(itemsSnapshot, name);
+            if (values == null || !this.itemsFetches.get(name).collectionName.equals(values.get(COLLECTION_NAME_KEY))) continue;
+            try {
+                items.put(name, listResultFromValues(values));
+            } catch (final RuntimeException ignored) {
+            } catch (final BaasdayException ignored) {
+            }
+        }
+        return new Session(userValues == null ? null : new AuthenticatedUser(userValues), items, true);
+    }
+
+    private static <T> Future<T> submit(final Callable<T> callable) {
+        final FutureTask<T> task = new FutureTask<T>(callable);
+        BackgroundExecutor.get().execute(task);
+        return task;
+    }
+
+    private static <T> T await(final Future<T> future) throws BaasdayException {
+        try {
+            return future.get();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new BaasdayException(exception);
+        } catch (final ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof BaasdayException) throw (BaasdayException) cause;
+            throw new BaasdayException(cause);
+        }
+    }
+
+    /**
+     * <p>宣言したすべての取得と端末情報の更新をbaasdayサーバに対して並行して行います。</p>
+     * <p>すべて完了するとスナップショットを保存し、取得したデータを返します。ひとつでも失敗した場合、スナップショットは更新されず、返されるFuture#getは失敗の原因となったBaasdayExceptionを原因とするExecutionExceptionをスローします。</p>
+     * @return 取得したデータを返すFuture
+     */
+    public Future<Session> refresh() {
+        final Future<AuthenticatedUser> userFuture = !this.fetchesUser ? null : submit(new Callable<AuthenticatedUser>() {
+            public AuthenticatedUser call() throws BaasdayException {
+                return AuthenticatedUser.fetch();
+            }
+        });
+        final Map<String, Future<ListResult<Item>>> itemsFutures = new LinkedHashMap<String, Future<ListResult<Item>>>();
+        for (final Map.Entry<String, ItemsFetch> entry : this.itemsFetches.entrySet()) {
+            final ItemsFetch fetch = entry.getValue();
+            itemsFutures.put(entry.getKey(), submit(new Callable<ListResult<Item>>() {
+                public ListResult<Item> call() throws BaasdayException {
+                    return Item.fetchAll(fetch.collectionName, fetch.query);
+                }
+            }));
+        }
+        final Map<String, Object> deviceValues = this.device == null ? null : new HashMap<String, Object>(this.device.getValues());
+        final boolean deviceChanged = deviceValues != null && !LocalQuery.valuesEqual(deviceValues, mapValue(this.loadSnapshot(), DEVICE_KEY));
+        final Future<Void> deviceFuture = !deviceChanged ? null : submit(new Callable<Void>() {
+            public Void call() throws BaasdayException {
+                new AuthenticatedUser(new HashMap<String, Object>()).updateDevice(new Device(deviceValues));
+                return null;
+            }
+        });
+        return submit(new Callable<Session>() {
+            public Session call() throws BaasdayException {
+                final AuthenticatedUser user = userFuture == null ? null : await(userFuture);
+                final Map<String, ListResult<Item>> items = new HashMap<String, ListResult<Item>>();
+                for (final Map.Entry<String, Future<ListResult<Item>>> entry : itemsFutures.entrySet()) items.put(entry.getKey(), await(entry.getValue()));
+                if (deviceFuture != null) await(deviceFuture);
+                Bootstrap.this.saveSnapshot(user, items, deviceValues);
+                return new Session(user, items, false);
+            }
+        });
+    }
+
+    private synchronized void saveSnapshot(final AuthenticatedUser user, final Map<String, ListResult<Item>> items, final Map<String, Object> deviceValues) {
+        final Map<String, Object> snapshot = new HashMap<String, Object>(this.loadSnapshot());
+        if (user != null) snapshot.put(USER_KEY, user.getValues());
+        final Map<String, Object> itemsSnapshot = new HashMap<String, Object>();
+        final Map<String, Object> previousItems = mapValue(snapshot, ITEMS_KEY);
+        if (previousItems != null) itemsSnapshot.putAll(previousItems);
+        for (final Map.Entry<String, ListResult<Item>> entry : items.entrySet()) {
+            itemsSnapshot.put(entry.getKey(), listResultValues(this.itemsFetches.get(entry.getKey()).collectionName, entry.getValue()));
+        }
+        snapshot.put(ITEMS_KEY, itemsSnapshot);
+        if (deviceValues != null) snapshot.put(DEVICE_KEY, deviceValues);
+        this.snapshot = snapshot;
+        try {
+            this.store.save(BinaryCodec.encode(snapshot));
+        } catch (final IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.baasday;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+final class BoundedPipeline {
+    private final Semaphore permits;
+    private final int maxInFlight;
+    private final boolean inline;
+
+    BoundedPipeline(final int maxInFlight, final boolean inline) {
+        this.inline = inline;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.permits = new Semaphore(this.maxInFlight);
+    }
+
+    BoundedPipeline(final int maxInFlight) {
+        this(maxInFlight, BackgroundExecutor.isPoolThread());
+    }
+
+    <T> Future<T> submit(final Callable<T> task) throws InterruptedException {
+        if (this.inline) {
+            final FutureTask<T> future = new FutureTask<T>(task);
+            future.run();
+            return future;
+        }
+        this.permits.acquire();
+        final Callable<T> releasing = new Callable<T>() {
+            public T call() throws Exception {
+                try {
+                    return task.call();
+                } finally {
+                    BoundedPipeline.this.permits.release();
+                }
+            }
+        };
+        try {
+            while (true) {
+                final ExecutorService executor = BackgroundExecutor.get();
+                try {
+                    return executor.submit(releasing);
+                } catch (final RejectedExecutionException exception) {
+                    if (BackgroundExecutor.get() == executor) throw exception;
+                }
+            }
+        } catch (final RuntimeException exception) {
+            this.permits.release();
+            throw exception;
+        }
+    }
+
+    void awaitAll() throws InterruptedException {
+        if (this.inline) return;
+        this.permits.acquire(this.maxInFlight);
+        this.permits.release(this.maxInFlight);
+    }
+}
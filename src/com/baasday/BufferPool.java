@@ -0,0 +1,116 @@
+package com.baasday;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class BufferPool {
+    private BufferPool() {
+    }
+
+    private static final int[] SIZE_CLASSES = {1024, 4 * 1024, 16 * 1024, 64 * 1024, 256 * 1024};
+    private static final int MAX_SHARED_BUFFERS_PER_CLASS = 8;
+
+    private static final class Bucket<T> {
+        private final ConcurrentLinkedQueue<T> shared = new ConcurrentLinkedQueue<T>();
+        private final AtomicInteger sharedCount = new AtomicInteger();
+
+        T poll() {
+            final T buffer = this.shared.poll();
+            if (buffer != null) this.sharedCount.decrementAndGet();
+            return buffer;
+        }
+
+        void offer(final T buffer) {
+            if (this.sharedCount.incrementAndGet() > MAX_SHARED_BUFFERS_PER_CLASS) {
+                this.sharedCount.decrementAndGet();
+                return;
+            }
+            this.shared.offer(buffer);
+        }
+    }
+
+    private static final class ThreadCache {
+        final byte[][] bytes = new byte[SIZE_CLASSES.length][];
+        final char[][] chars = new char[SIZE_CLASSES.length][];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Bucket<byte[]>[] BYTE_BUCKETS = new Bucket[SIZE_CLASSES.length];
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final Bucket<char[]>[] CHAR_BUCKETS = new Bucket[SIZE_CLASSES.length];
+
+    static {
+        for (int index = 0; index < SIZE_CLASSES.length; ++index) {
+            BYTE_BUCKETS[index] = new Bucket<byte[]>();
+            CHAR_BUCKETS[index] = new Bucket<char[]>();
+        }
+    }
+
+    private static final ThreadLocal<ThreadCache> THREAD_CACHE = new ThreadLocal<ThreadCache>() {
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+    };
+
+    private static int sizeClassFor(final int minimumSize) {
+        for (int index = 0; index < SIZE_CLASSES.length; ++index) {
+            if (SIZE_CLASSES[index] >= minimumSize) return index;
+        }
+        return -1;
+    }
+
+    private static int sizeClassOf(final int length) {
+        for (int index = 0; index < SIZE_CLASSES.length; ++index) {
+            if (SIZE_CLASSES[index] == length) return index;
+        }
+        return -1;
+    }
+
+    static byte[] acquireBytes(final int minimumSize) {
+        final int sizeClass = sizeClassFor(minimumSize);
+        if (sizeClass < 0) return new byte[minimumSize];
+        final ThreadCache cache = THREAD_CACHE.get();
+        byte[] buffer = cache.bytes[sizeClass];
+        if (buffer != null) {
+            cache.bytes[sizeClass] = null;
+            return buffer;
+        }
+        buffer = BYTE_BUCKETS[sizeClass].poll();
+        return buffer != null ? buffer : new byte[SIZE_CLASSES[sizeClass]];
+    }
+
+    static void releaseBytes(final byte[] buffer) {
+        final int sizeClass = sizeClassOf(buffer.length);
+        if (sizeClass < 0) return;
+        final ThreadCache cache = THREAD_CACHE.get();
+        if (cache.bytes[sizeClass] == null) {
+            cache.bytes[sizeClass] = buffer;
+        } else {
+            BYTE_BUCKETS[sizeClass].offer(buffer);
+        }
+    }
+
+    static char[] acquireChars(final int minimumSize) {
+        final int sizeClass = sizeClassFor(minimumSize);
+        if (sizeClass < 0) return new char[minimumSize];
+        final ThreadCache cache = THREAD_CACHE.get();
+        char[] buffer = cache.chars[sizeClass];
+        if (buffer != null) {
+            cache.chars[sizeClass] = null;
+            return buffer;
+        }
+        buffer = CHAR_BUCKETS[sizeClass].poll();
+        return buffer != null ? buffer : new char[SIZE_CLASSES[sizeClass]];
+    }
+
+    static void releaseChars(final char[] buffer) {
+        final int sizeClass = sizeClassOf(buffer.length);
+        if (sizeClass < 0) return;
+        final ThreadCache cache = THREAD_CACHE.get();
+        if (cache.chars[sizeClass] == null) {
+            cache.chars[sizeClass] = buffer;
+        } else {
+            CHAR_BUCKETS[sizeClass].offer(buffer);
+        }
+    }
+}
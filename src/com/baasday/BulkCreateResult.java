@@ -0,0 +1,97 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Item#createAllで複数のアイテムをまとめて追加した時の結果を表すクラスです。</p>
+ * <p>追加に失敗したアイテムがあっても他のアイテムの追加は続けられ、失敗は入力の位置ごとにこの結果に記録されます。</p>
+ * @see Item#createAll(String, Iterable, int)
+ */
+public final class BulkCreateResult {
+    private final List<Item> items = new ArrayList<Item>();
+    private final Map<Integer, BaasdayException> failures = new TreeMap<Integer, BaasdayException>();
+    private int createdCount;
+    private long elapsedNanos;
+
+    BulkCreateResult() {
+    }
+
+    synchronized int reserve() {
+        this.items.add(null);
+        return this.items.size() - 1;
+    }
+
+    synchronized void created(final int index, final Item item) {
+        this.items.set(index, item);
+        ++this.createdCount;
+    }
+
+    synchronized void failed(final int index, final BaasdayException exception) {
+        this.failures.put(index, exception);
+    }
+
+    synchronized void finish(final long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * <p>入力されたアイテムの件数を返します。</p>
+     * @return 件数
+     */
+    public synchronized int getTotalCount() {
+        return this.items.size();
+    }
+
+    /**
+     * <p>追加に成功したアイテムの件数を返します。</p>
+     * @return 件数
+     */
+    public synchronized int getCreatedCount() {
+        return this.createdCount;
+    }
+
+    /**
+     * <p>追加に失敗したアイテムの件数を返します。</p>
+     * @return 件数
+     */
+    public synchronized int getFailureCount() {
+        return this.failures.size();
+    }
+
+    /**
+     * <p>追加したアイテムのリストを返します。</p>
+     * <p>リストは入力と同じ順に並び、追加に失敗した位置にはnullが入ります。</p>
+     * @return 追加したアイテムのリスト
+     */
+    public synchronized List<Item> getItems() {
+        return Collections.unmodifiableList(new ArrayList<Item>(this.items));
+    }
+
+    /**
+     * <p>追加に失敗したアイテムの入力の位置(0から始まる)と、失敗の原因の例外のマップを返します。</p>
+     * @return 位置の順に並んだマップ
+     */
+    public synchronized Map<Integer, BaasdayException> getFailures() {
+        return Collections.unmodifiableMap(new TreeMap<Integer, BaasdayException>(this.failures));
+    }
+
+    /**
+     * <p>すべての追加が終わるまでにかかった時間を返します。</p>
+     * @return 時間(ミリ秒)
+     */
+    public synchronized long getElapsedMillis() {
+        return this.elapsedNanos / 1000000L;
+    }
+
+    /**
+     * <p>1秒あたりに処理したアイテムの件数を返します。失敗したアイテムも含みます。</p>
+     * @return 1秒あたりの件数
+     */
+    public synchronized double getItemsPerSecond() {
+        return this.elapsedNanos == 0 ? 0 : this.items.size() * 1e9 / this.elapsedNanos;
+    }
+}
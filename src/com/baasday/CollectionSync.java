@@ -0,0 +1,263 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>コレクションの複製(LocalCollection)を差分だけ取得して最新の状態に保つクラスです。</p>
+ * <p>同期済みのアイテムの更新日時("_updatedAt")の最大値を記録しておき、syncメソッドではそれ以降に更新されたアイテムだけを更新日時とIDの順に取得して複製に反映します。変更が多い場合は、前のページの最後のアイテムの更新日時とIDより後ろを条件にしてページ単位で繰り返し取得するため、同じ更新日時のアイテムが多数あっても取得が進みます。</p>
+ * <p>サーバ上で削除されたアイテムは差分として取得できないため、削除は墓標(tombstone)で表します。墓標フィールドの値がtrueのアイテムは複製から取り除かれます。アイテムを削除する場合はdeleteメソッドを利用してください。</p>
+ * <p>アプリケーションを再起動しても差分同期を続けられるように、getWatermarkで取得した日時を保存し、次回起動時にsetWatermarkで設定してください。</p>
+ * @see LocalCollection
+ */
+public class CollectionSync {
+    /**
+     * <p>墓標フィールドの既定の名前です。</p>
+     */
+    public static final String DEFAULT_TOMBSTONE_FIELD = "deleted";
+
+    private static final String UPDATED_AT_FIELD = "_updatedAt";
+
+    /**
+     * <p>一回の同期の結果を表すクラスです。</p>
+     */
+    public static class Result {
+        private final int transferredCount;
+        private final int removedCount;
+        private final int pageCount;
+        private final long lagMillis;
+        private final long elapsedMillis;
+        private final Date watermark;
+
+        Result(final int transferredCount, final int removedCount, final int pageCount, final long lagMillis, final long elapsedMillis, final Date watermark) {
+            this.transferredCount = transferredCount;
+            this.removedCount = removedCount;
+            this.pageCount = pageCount;
+            this.lagMillis = lagMillis;
+            this.elapsedMillis = elapsedMillis;
+            this.watermark = watermark;
+        }
+
+        /**
+         * <p>サーバから取得したアイテムの件数を返します。墓標を含みます。</p>
+         * @return 件数
+         */
+        public int getTransferredCount() {
+            return this.transferredCount;
+        }
+
+        /**
+         * <p>墓標によって複製から取り除いたアイテムの件数を返します。</p>
+         * @return 件数
+         */
+        public int getRemovedCount() {
+            return this.removedCount;
+        }
+
+        /**
+         * <p>サーバへのリクエストの回数を返します。</p>
+         * @return リクエストの回数
+         */
+        public int getPageCount() {
+            return this.pageCount;
+        }
+
+        /**
+         * <p>同期の遅れを返します。</p>
+         * <p>前回の同期を開始してから今回の同期が完了するまでの時間で、同期前の複製がサーバに対して最大でどれだけ遅れていたかを表します。最初の同期では-1を返します。</p>
+         * @return 同期の遅れ(ミリ秒)
+         */
+        public long getLagMillis() {
+            return this.lagMillis;
+        }
+
+        /**
+         * <p>同期にかかった時間を返します。</p>
+         * @return 同期にかかった時間(ミリ秒)
+         */
+        public long getElapsedMillis() {
+            return this.elapsedMillis;
+        }
+
+        /**
+         * <p>同期後の更新日時の最大値を返します。</p>
+         * @return 更新日時の最大値。まだアイテムを取得していない場合はnull
+         */
+        public Date getWatermark() {
+            return this.watermark;
+        }
+    }
+
+    private final String collectionName;
+    private final LocalCollection replica;
+    private String tombstoneField = DEFAULT_TOMBSTONE_FIELD;
+    private int pageSize = LocalQuery.MAX_LIMIT;
+    private Date watermark;
+    private final Set<String> idsAtWatermark = new HashSet<String>();
+    private long lastSyncStartedAt = -1;
+    private RequestPriority priority = RequestPriority.BACKGROUND;
+
+    /**
+     * <p>コレクション名と複製を指定してオブジェクトを作成します。</p>
+     * @param collectionName コレクション名
+     * @param replica 同期先の複製
+     */
+    public CollectionSync(final String collectionName, final LocalCollection replica) {
+        this.collectionName = collectionName;
+        this.replica = replica;
+    }
+
+    /**
+     * <p>コレクション名を指定してオブジェクトを作成します。同期先はLocalCollection#attachで登録された複製です。</p>
+     * @param collectionName コレクション名
+     */
+    public CollectionSync(final String collectionName) {
+        this(collectionName, LocalCollection.attach(collectionName));
+    }
+
+    /**
+     * <p>同期先の複製を返します。</p>
+     * @return 複製
+     */
+    public LocalCollection getReplica() {
+        return this.replica;
+    }
+
+    /**
+     * <p>墓標フィールドの名前を返します。</p>
+     * @return 墓標フィールドの名前
+     */
+    public synchronized String getTombstoneField() {
+        return this.tombstoneField;
+    }
+
+    /**
+     * <p>墓標フィールドの名前を設定します。</p>
+     * @param tombstoneField 墓標フィールドの名前
+     */
+    public synchronized void setTombstoneField(final String tombstoneField) {
+        this.tombstoneField = tombstoneField;
+    }
+
+    /**
+     * <p>一回のリクエストで取得する件数を設定します。最大で100件です。</p>
+     * @param pageSize 件数
+     */
+    public synchronized void setPageSize(final int pageSize) {
+        this.pageSize = Math.max(1, Math.min(pageSize, LocalQuery.MAX_LIMIT));
+    }
+
+    /**
+     * <p>同期のリクエストの優先度を設定します。初期値はBACKGROUNDです。</p>
+     * @param priority 優先度
+     * @see RequestScheduler
+     */
+    public synchronized void setPriority(final RequestPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * <p>同期済みのアイテムの更新日時の最大値を返します。</p>
+     * @return 更新日時の最大値。まだアイテムを取得していない場合はnull
+     */
+    public synchronized Date getWatermark() {
+        return this.watermark;
+    }
+
+    /**
+     * <p>同期済みのアイテムの更新日時の最大値を設定します。以前に保存した値から同期を再開するときに使用します。</p>
+     * @param watermark 更新日時の最大値。nullの場合は次回の同期ですべてのアイテムを取得します
+     */
+    public synchronized void setWatermark(final Date watermark) {
+        this.watermark = watermark;
+        this.idsAtWatermark.clear();
+    }
+
+    private Query changesQuery(final Date lastUpdatedAt, final String lastId) {
+        final Query query = new Query().order(UPDATED_AT_FIELD, "_id").limit(this.pageSize);
+        if (lastUpdatedAt != null) {
+            final List<Map<String, Object>> sameUpdatedAt = new ArrayList<Map<String, Object>>(2);
+            sameUpdatedAt.add(Query.Filters.equal(UPDATED_AT_FIELD, lastUpdatedAt));
+            sameUpdatedAt.add(Query.Filters.greaterThan("_id", lastId));
+            final List<Map<String, Object>> alternatives = new ArrayList<Map<String, Object>>(2);
+            alternatives.add(Query.Filters.greaterThan(UPDATED_AT_FIELD, lastUpdatedAt));
+            alternatives.add(Query.Filters.and(sameUpdatedAt));
+            query.filter(Query.Filters.or(alternatives));
+        } else if (this.watermark != null) {
+            query.filter(Query.Filters.greaterThanOrEqual(UPDATED_AT_FIELD, this.watermark));
+        }
+        return query;
+    }
+
+    private boolean isTombstone(final Item item) {
+        return Boolean.TRUE.equals(item.get(this.tombstoneField));
+    }
+
+    /**
+     * <p>前回の同期以降に更新されたアイテムを取得して複製に反映します。</p>
+     * @return 同期の結果
+     * @throws BaasdayException 取得に失敗した場合
+     */
+    public synchronized Result sync() throws BaasdayException {
+        final RequestPriority previousPriority = RequestScheduler.setCurrentPriority(this.priority);
+        try {
+            return this.syncPages();
+        } finally {
+            RequestScheduler.setCurrentPriority(previousPriority);
+        }
+    }
+
+    private Result syncPages() throws BaasdayException {
+        final long startedAt = System.currentTimeMillis();
+        int transferredCount = 0;
+        int removedCount = 0;
+        int pageCount = 0;
+        Date lastUpdatedAt = null;
+        String lastId = null;
+        while (true) {
+            final ListResult<Item> page = Item.fetchAll(this.collectionName, this.changesQuery(lastUpdatedAt, lastId));
+            ++pageCount;
+            transferredCount += page.getContents().size();
+            for (final Item item : page.getContents()) {
+                final Date updatedAt = item.getUpdatedAt();
+                final String id = item.getId();
+                if (updatedAt != null) {
+                    lastUpdatedAt = updatedAt;
+                    lastId = id;
+                }
+                if (updatedAt != null && this.watermark != null && updatedAt.getTime() == this.watermark.getTime() && this.idsAtWatermark.contains(id)) continue;
+                if (this.isTombstone(item)) {
+                    if (this.replica.remove(id) != null) ++removedCount;
+                } else {
+                    this.replica.put(item);
+                }
+                if (updatedAt == null) continue;
+                if (this.watermark == null || updatedAt.after(this.watermark)) {
+                    this.watermark = updatedAt;
+                    this.idsAtWatermark.clear();
+                }
+                if (updatedAt.getTime() == this.watermark.getTime()) this.idsAtWatermark.add(id);
+            }
+            if (page.getContents().size() < this.pageSize || lastUpdatedAt == null) break;
+        }
+        final long finishedAt = System.currentTimeMillis();
+        final long lagMillis = this.lastSyncStartedAt < 0 ? -1 : finishedAt - this.lastSyncStartedAt;
+        this.lastSyncStartedAt = startedAt;
+        return new Result(transferredCount, removedCount, pageCount, lagMillis, finishedAt - startedAt, this.watermark);
+    }
+
+    /**
+     * <p>アイテムに墓標を設定して、複製から取り除きます。</p>
+     * <p>アイテム自体はサーバ上に残り、他の端末の複製からも次回の同期で取り除かれます。</p>
+     * @param item アイテム
+     * @throws BaasdayException 更新に失敗した場合
+     */
+    public void delete(final Item item) throws BaasdayException {
+        item.update(UpdateOperations.set(this.getTombstoneField(), true));
+        this.replica.remove(item.getId());
+    }
+}
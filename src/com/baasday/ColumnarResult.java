@@ -0,0 +1,384 @@
+package com.baasday;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>多数のオブジェクトをフィールドごとの列として保持する取得結果です。</p>
+ * <p>フィールド名は一度だけ保持され、整数、小数、日付、ブールの値はプリミティブの配列に、文字列は列ごとの辞書の番号として保持されます。nullとフィールドの有無はビット列で表されます。同じ形のオブジェクトを大量に取得する集計などの用途で、ListResultに比べてメモリの使用量を大きく減らせます。</p>
+ * <p>各行はgetRowで得られるBasicObjectとして読み出せます。行のオブジェクトは値を複製せず、この結果の列を直接参照します。</p>
+ * <p>数値のフィールドに整数と小数が混在する場合、その列の値はすべてDoubleとして返されます。型の異なる値が混在するフィールド、リストやマップを値に持つフィールドは通常のオブジェクトとして保持されます。</p>
+ * @see Item#fetchAllColumnar(String, Query)
+ */
+public final class ColumnarResult {
+    private static final int TYPE_NONE = 0;
+    private static final int TYPE_LONG = 1;
+    private static final int TYPE_DOUBLE = 2;
+    private static final int TYPE_STRING = 3;
+    private static final int TYPE_BOOLEAN = 4;
+    private static final int TYPE_DATE = 5;
+    private static final int TYPE_OBJECT = 6;
+
+    private static int typeOf(final Object value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) return TYPE_LONG;
+        if (value instanceof Number) return TYPE_DOUBLE;
+        if (value instanceof String) return TYPE_STRING;
+        if (value instanceof Boolean) return TYPE_BOOLEAN;
+        if (value instanceof Date) return TYPE_DATE;
+        return TYPE_OBJECT;
+    }
+
+    private static final class Column {
+        private int type = TYPE_NONE;
+        private final BitSet present = new BitSet();
+        private final BitSet nulls = new BitSet();
+        private long[] longs;
+        private double[] doubles;
+        private int[] codes;
+        private BitSet booleans;
+        private Object[] objects;
+        private List<String> dictionary;
+        private Map<String, Integer> dictionaryIndex;
+
+        private static int grownCapacity(final int length, final int row) {
+            return Math.max(row + 1, Math.max(16, length + (length >> 1)));
+        }
+
+        private void ensureCapacity(final int row) {
+            switch (this.type) {
+                case TYPE_LONG:
+                case TYPE_DATE:
+                    if (row >= this.longs.length) this.longs = Arrays.copyOf(this.longs, grownCapacity(this.longs.length, row));
+                    break;
+                case TYPE_DOUBLE:
+                    if (row >= this.doubles.length) this.doubles = Arrays.copyOf(this.doubles, grownCapacity(this.doubles.length, row));
+                    break;
+                case TYPE_STRING:
+                    if (row >= this.codes.length) this.codes = Arrays.copyOf(this.codes, grownCapacity(this.codes.length, row));
+                    break;
+                case TYPE_OBJECT:
+                    if (row >= this.objects.length) this.objects = Arrays.copyOf(this.objects, grownCapacity(this.objects.length, row));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void initialize(final int type, final int capacity) {
+            this.type = type;
+            switch (type) {
+                case TYPE_LONG:
+                case TYPE_DATE:
+                    this.longs = new long[capacity];
+                    break;
+                case TYPE_DOUBLE:
+                    this.doubles = new double[capacity];
+                    break;
+                case TYPE_STRING:
+                    this.codes = new int[capacity];
+                    this.dictionary = new ArrayList<String>();
+                    this.dictionaryIndex = new HashMap<String, Integer>();
+                    break;
+                case TYPE_BOOLEAN:
+                    this.booleans = new BitSet();
+                    break;
+                default:
+                    this.objects = new Object[capacity];
+                    break;
+            }
+        }
+
+        private void convertTo(final int type, final int rowCount) {
+            if (type == TYPE_DOUBLE) {
+                final double[] doubles = new double[this.longs.length];
+                final int copiedCount = Math.min(rowCount, this.longs.length);
+                for (int row = 0; row < copiedCount; ++row) doubles[row] = this.longs[row];
+                this.longs = null;
+                this.doubles = doubles;
+                this.type = TYPE_DOUBLE;
+                return;
+            }
+            final Object[] objects = new Object[Math.max(16, rowCount)];
+            for (int row = 0; row < rowCount; ++row) objects[row] = this.get(row);
+            this.longs = null;
+            this.doubles = null;
+            this.codes = null;
+            this.booleans = null;
+            this.dictionary = null;
+            this.dictionaryIndex = null;
+            this.objects = objects;
+            this.type = TYPE_OBJECT;
+        }
+
+        void set(final int row, final Object value) {
+            if (value == null) {
+                this.present.set(row);
+                this.nulls.set(row);
+                return;
+            }
+            final int valueType = typeOf(value);
+            if (this.type == TYPE_NONE) {
+                this.initialize(valueType, Math.max(16, row + 1));
+            } else if (this.type != valueType && this.type != TYPE_OBJECT) {
+                if (this.type == TYPE_LONG && valueType == TYPE_DOUBLE) {
+                    this.convertTo(TYPE_DOUBLE, row);
+                } else if (!(this.type == TYPE_DOUBLE && valueType == TYPE_LONG)) {
+                    this.convertTo(TYPE_OBJECT, row);
+                }
+            }
+            this.ensureCapacity(row);
+            this.present.set(row);
+            switch (this.type) {
+                case TYPE_LONG:
+                    this.longs[row] = ((Number) value).longValue();
+                    break;
+                case TYPE_DOUBLE:
+                    this.doubles[row] = ((Number) value).doubleValue();
+                    break;
+                case TYPE_STRING: {
+                    Integer code = this.dictionaryIndex.get(value);
+                    if (code == null) {
+                        code = this.dictionary.size();
+                        this.dictionary.add((String) value);
+                        this.dictionaryIndex.put((String) value, code);
+                    }
+                    this.codes[row] = code;
+                    break;
+                }
+                case TYPE_BOOLEAN:
+                    this.booleans.set(row, (Boolean) value);
+                    break;
+                case TYPE_DATE:
+                    this.longs[row] = ((Date) value).getTime();
+                    break;
+                default:
+                    this.objects[row] = value;
+                    break;
+            }
+        }
+
+        void seal(final int rowCount) {
+            this.dictionaryIndex = null;
+            if (this.longs != null && this.longs.length != rowCount) this.longs = Arrays.copyOf(this.longs, rowCount);
+            if (this.doubles != null && this.doubles.length != rowCount) this.doubles = Arrays.copyOf(this.doubles, rowCount);
+            if (this.codes != null && this.codes.length != rowCount) this.codes = Arrays.copyOf(this.codes, rowCount);
+            if (this.objects != null && this.objects.length != rowCount) this.objects = Arrays.copyOf(this.objects, rowCount);
+        }
+
+        boolean has(final int row) {
+            return this.present.get(row);
+        }
+
+        boolean hasValue(final int row) {
+            return this.present.get(row) && !this.nulls.get(row);
+        }
+
+        Object get(final int row) {
+            if (!this.hasValue(row)) return null;
+            switch (this.type) {
+                case TYPE_LONG: {
+                    final long value = this.longs[row];
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int) value;
+                    return value;
+                }
+                case TYPE_DOUBLE:
+                    return this.doubles[row];
+                case TYPE_STRING:
+                    return this.dictionary.get(this.codes[row]);
+                case TYPE_BOOLEAN:
+                    return this.booleans.get(row);
+                case TYPE_DATE:
+                    return new Date(this.longs[row]);
+                case TYPE_OBJECT:
+                    return this.objects[row];
+                default:
+                    return null;
+            }
+        }
+
+        boolean isPrimitiveNumber() {
+            return this.type == TYPE_LONG || this.type == TYPE_DOUBLE;
+        }
+
+        long getLong(final int row) {
+            if (!this.hasValue(row)) return 0;
+            return this.type == TYPE_LONG ? this.longs[row] : (long) this.doubles[row];
+        }
+
+        double getDouble(final int row) {
+            if (!this.hasValue(row)) return 0;
+            return this.type == TYPE_LONG ? this.longs[row] : this.doubles[row];
+        }
+    }
+
+    /**
+     * <p>ColumnarResultの一行を表すオブジェクトです。</p>
+     * <p>値を複製せず、ColumnarResultの列を直接参照します。getValuesは呼び出すたびに新しいマップを作成します。</p>
+     */
+    public static final class Row extends BasicObject {
+        private final ColumnarResult result;
+        private final int row;
+
+        Row(final ColumnarResult result, final int row) {
+            super(null);
+            this.result = result;
+            this.row = row;
+        }
+
+        /**
+         * <p>この行の位置を返します。</p>
+         * @return 行の位置
+         */
+        public int getRowIndex() {
+            return this.row;
+        }
+
+        public Map<String, Object> getValues() {
+            final Map<String, Object> values = new LinkedHashMap<String, Object>();
+            for (final Map.Entry<String, Column> entry : this.result.columns.entrySet()) {
+                if (entry.getValue().has(this.row)) values.put(entry.getKey(), entry.getValue().get(this.row));
+            }
+            return Utility.freezeMap(values);
+        }
+
+        void setValues(final Map<String, Object> values) {
+            throw new UnsupportedOperationException("A row of a columnar result cannot be modified.");
+        }
+
+        void setValue(final String key, final Object value) {
+            throw new UnsupportedOperationException("A row of a columnar result cannot be modified.");
+        }
+
+        public Object get(final String field) {
+            final Column column = this.result.columns.get(field);
+            return column == null ? null : column.get(this.row);
+        }
+
+        public boolean has(final String field) {
+            final Column column = this.result.columns.get(field);
+            return column != null && column.has(this.row);
+        }
+
+        public int getInt(final String field) throws BaasdayException {
+            final Column column = this.result.columns.get(field);
+            if (column != null && column.isPrimitiveNumber()) return (int) column.getLong(this.row);
+            return super.getInt(field);
+        }
+
+        public long getLong(final String field) throws BaasdayException {
+            final Column column = this.result.columns.get(field);
+            if (column != null && column.isPrimitiveNumber()) return column.getLong(this.row);
+            return super.getLong(field);
+        }
+
+        public double getDouble(final String field) throws BaasdayException {
+            final Column column = this.result.columns.get(field);
+            if (column != null && column.isPrimitiveNumber()) return column.getDouble(this.row);
+            return super.getDouble(field);
+        }
+    }
+
+    private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+    private int count;
+    private int rowCount;
+    private boolean sealed;
+
+    ColumnarResult() {
+    }
+
+    void add(final Map<String, Object> values) {
+        if (this.sealed) throw new IllegalStateException("The columnar result is already built.");
+        final int row = this.rowCount++;
+        if (values == null) return;
+        for (final Map.Entry<String, Object> entry : values.entrySet()) {
+            Column column = this.columns.get(entry.getKey());
+            if (column == null) {
+                column = new Column();
+                this.columns.put(entry.getKey(), column);
+            }
+            column.set(row, entry.getValue());
+        }
+    }
+
+    void setCount(final int count) {
+        this.count = count;
+    }
+
+    ColumnarResult seal() {
+        for (final Column column : this.columns.values()) column.seal(this.rowCount);
+        this.sealed = true;
+        return this;
+    }
+
+    /**
+     * <p>オブジェクトのコレクションから列形式の結果を作成します。</p>
+     * @param objects オブジェクトのコレクション
+     * @return 列形式の結果。件数はオブジェクトの数です
+     */
+    public static ColumnarResult from(final Collection<? extends BasicObject> objects) {
+        final ColumnarResult result = new ColumnarResult();
+        for (final BasicObject object : objects) result.add(object.getValues());
+        result.setCount(result.rowCount);
+        return result.seal();
+    }
+
+    /**
+     * <p>抽出した結果の件数を返します。</p>
+     * <p>Queryに指定したフィルタを適用した件数で、取得開始位置と最大取得件数の影響は受けません。</p>
+     * @return 件数
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * <p>保持している行の数を返します。</p>
+     * @return 行の数
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * <p>いずれかの行に含まれるフィールド名を返します。</p>
+     * @return フィールド名のリスト
+     */
+    public List<String> getFieldNames() {
+        return Collections.unmodifiableList(new ArrayList<String>(this.columns.keySet()));
+    }
+
+    /**
+     * <p>指定された位置の行を返します。</p>
+     * @param row 行の位置
+     * @return 行
+     */
+    public Row getRow(final int row) {
+        if (row < 0 || row >= this.rowCount) throw new IndexOutOfBoundsException("row: " + row + ", rowCount: " + this.rowCount);
+        return new Row(this, row);
+    }
+
+    /**
+     * <p>すべての行をリストとして返します。リストの要素は必要になった時点で作成されます。</p>
+     * @return 行のリスト
+     */
+    public List<Row> getRows() {
+        return new AbstractList<Row>() {
+            public Row get(final int index) {
+                return ColumnarResult.this.getRow(index);
+            }
+
+            public int size() {
+                return ColumnarResult.this.rowCount;
+            }
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>コンパイルされた変更できない抽出条件です。インスタンスはQuery#compileで作成します。</p>
+ * <p>リクエストパラメータの文字列は作成時に一度だけ計算され、以降は使い回されます。フィルタはキーを名前順に並べ替えた複製として保持され、その順序のままエンコードされるので、同じ内容の抽出条件からは利用しているJSONの変換処理によらず常に同じ文字列とハッシュ値が得られます。</p>
+ * <p>Queryとは別の型で、内容を変更するメソッドを持ちません。内容を変更したい場合はtoQueryで新しいQueryを作成してください。</p>
+ * @see Query#compile()
+ * @see Item#fetchAll(String, CompiledQuery)
+ */
+public final class CompiledQuery {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Map<String, Object> filter;
+    private final List<Query.FieldOrder> order;
+    private final Integer skip;
+    private final Integer limit;
+    private final Integer waitSeconds;
+    private final String queryString;
+    private final long stableHash;
+
+    CompiledQuery(final Query query) {
+        this.filter = query.hasFilter() ? Utility.freezeMap(canonicalMap(query.filter())) : null;
+        if (query.hasOrder()) {
+            final List<Query.FieldOrder> order = new ArrayList<Query.FieldOrder>(query.order().size());
+            for (final Query.FieldOrder fieldOrder : query.order()) order.add(new Query.FieldOrder(fieldOrder.getField(), fieldOrder.isDescending()));
+            this.order = Collections.unmodifiableList(order);
+        } else {
+            this.order = null;
+        }
+        this.skip = query.hasSkip() ? query.skip() : null;
+        this.limit = query.hasLimit() ? query.limit() : null;
+        this.waitSeconds = query.hasWaitSeconds() ? query.waitSeconds() : null;
+        final Map<String, Object> requestParameters = new LinkedHashMap<String, Object>();
+        if (this.filter != null) {
+            final JsonWriter writer = new JsonWriter();
+            writer.writeValue(this.filter);
+            requestParameters.put("filter", writer.toString());
+        }
+        if (this.order != null) requestParameters.put("order", Query.orderString(this.order));
+        if (this.skip != null) requestParameters.put("skip", this.skip);
+        if (this.limit != null) requestParameters.put("limit", this.limit);
+        if (this.waitSeconds != null) requestParameters.put("wait", this.waitSeconds);
+        this.queryString = Query.queryString(requestParameters);
+        this.stableHash = fnv1a(this.queryString);
+    }
+
+    private static Object canonicalValue(final Object value) {
+        if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> map = (Map<String, Object>) value;
+            return canonicalMap(map);
+        } else if (value instanceof BasicObject) {
+            return canonicalMap(((BasicObject) value).getValues());
+        } else if (value instanceof List) {
+            final List<Object> result = new ArrayList<Object>(((List) value).size());
+            for (final Object element : (List) value) result.add(canonicalValue(element));
+            return result;
+        } else if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        } else {
+            return value;
+        }
+    }
+
+    private static Map<String, Object> canonicalMap(final Map<String, Object> map) {
+        final Map<String, Object> sorted = new TreeMap<String, Object>();
+        for (final Map.Entry<String, Object> entry : map.entrySet()) sorted.put(entry.getKey(), canonicalValue(entry.getValue()));
+        return sorted;
+    }
+
+    private static long fnv1a(final String string) {
+        long hash = FNV_OFFSET_BASIS;
+        final int length = string.length();
+        for (int index = 0; index < length; ++index) {
+            hash ^= string.charAt(index);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * <p>この抽出条件と同じ内容を持つ、変更できるQueryを新しく作成して返します。</p>
+     * <p>返されたQueryを変更しても、この抽出条件には影響しません。</p>
+     * @return 抽出条件
+     */
+    public Query toQuery() {
+        final Query query = new Query();
+        if (this.filter != null) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> filter = (Map<String, Object>) Utility.mutableCopy(this.filter);
+            query.filter(filter);
+        }
+        if (this.order != null) {
+            final List<Query.FieldOrder> order = new ArrayList<Query.FieldOrder>(this.order.size());
+            for (final Query.FieldOrder fieldOrder : this.order) order.add(new Query.FieldOrder(fieldOrder.getField(), fieldOrder.isDescending()));
+            query.order(order);
+        }
+        if (this.skip != null) query.skip(this.skip);
+        if (this.limit != null) query.limit(this.limit);
+        if (this.waitSeconds != null) query.waitSeconds(this.waitSeconds);
+        return query;
+    }
+
+    /**
+     * <p>この抽出条件をキャッシュのキーとして使うための文字列を返します。</p>
+     * <p>同じ内容の抽出条件からは常に同じ文字列が返されます。</p>
+     * @return キャッシュのキー
+     */
+    public String getCacheKey() {
+        return this.queryString;
+    }
+
+    /**
+     * <p>この抽出条件の64ビットのハッシュ値を返します。</p>
+     * <p>ハッシュ値はエンコードされたリクエストパラメータから計算されるため、プロセスや端末をまたいでも同じ値になります。</p>
+     * @return ハッシュ値
+     */
+    public long getStableHash() {
+        return this.stableHash;
+    }
+
+    String toQueryString() {
+        return this.queryString;
+    }
+
+    boolean isLongPoll() {
+        return this.waitSeconds != null && this.waitSeconds > 0;
+    }
+
+    public boolean equals(final Object object) {
+        return object instanceof CompiledQuery && this.queryString.equals(((CompiledQuery) object).queryString);
+    }
+
+    public int hashCode() {
+        return (int) (this.stableHash ^ (this.stableHash >>> 32));
+    }
+
+    public String toString() {
+        return this.queryString;
+    }
+}
@@ -0,0 +1,106 @@
+package com.baasday;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+final class CountCache {
+    static final long DEFAULT_TTL_MILLIS = 2000;
+
+    private static final int MAX_ENTRIES = 256;
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+    private static volatile long ttlMillis = DEFAULT_TTL_MILLIS;
+
+    private static final class Entry {
+        final String path;
+        final FutureTask<Integer> task;
+        volatile long completedAt;
+
+        Entry(final String path, final Callable<Integer> loader) {
+            this.path = path;
+            this.task = new FutureTask<Integer>(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    try {
+                        return loader.call();
+                    } finally {
+                        Entry.this.completedAt = System.currentTimeMillis();
+                    }
+                }
+            });
+        }
+
+        boolean isExpired(final long now) {
+            final long completedAt = this.completedAt;
+            return completedAt != 0 && this.task.isDone() && now - completedAt >= ttlMillis;
+        }
+    }
+
+    private CountCache() {
+    }
+
+    static void setTtlMillis(final long ttlMillis) {
+        CountCache.ttlMillis = Math.max(0, ttlMillis);
+        ENTRIES.clear();
+    }
+
+    static CompiledQuery countQuery(final Query query) {
+        final Query countQuery = new Query().limit(0);
+        if (query != null && query.hasFilter()) countQuery.filter(query.filter());
+        return countQuery.compile();
+    }
+
+    static int count(final String path, final Query query) throws BaasdayException {
+        final CompiledQuery countQuery = countQuery(query);
+        final String key = path + "?" + countQuery.toQueryString();
+        Entry entry = ENTRIES.get(key);
+        boolean owner = false;
+        while (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            final Entry created = new Entry(path, new Callable<Integer>() {
+                public Integer call() throws BaasdayException {
+                    return APIClient.countFromListAPIResult(new APIClient().get(path).query(countQuery).responseFields("_count").doRequest());
+                }
+            });
+            if (entry == null ? ENTRIES.putIfAbsent(key, created) == null : ENTRIES.replace(key, entry, created)) {
+                if (ENTRIES.size() > MAX_ENTRIES) evictExpired();
+                entry = created;
+                owner = true;
+                break;
+            }
+            entry = ENTRIES.get(key);
+        }
+        if (owner) entry.task.run();
+        try {
+            return entry.task.get();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new BaasdayException(exception);
+        } catch (final ExecutionException exception) {
+            ENTRIES.remove(key, entry);
+            final Throwable cause = exception.getCause();
+            if (cause instanceof BaasdayException) throw (BaasdayException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new BaasdayException(cause);
+        }
+    }
+
+    private static void evictExpired() {
+        final long now = System.currentTimeMillis();
+        for (final Iterator<Entry> iterator = ENTRIES.values().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().isExpired(now)) iterator.remove();
+        }
+        if (ENTRIES.size() > MAX_ENTRIES) ENTRIES.clear();
+    }
+
+    static void invalidate(final String writtenPath) {
+        if (ENTRIES.isEmpty()) return;
+        for (final Iterator<Map.Entry<String, Entry>> iterator = ENTRIES.entrySet().iterator(); iterator.hasNext(); ) {
+            final String path = iterator.next().getValue().path;
+            if (writtenPath.equals(path) || (writtenPath.startsWith(path) && writtenPath.charAt(path.length()) == '/')) iterator.remove();
+        }
+    }
+}
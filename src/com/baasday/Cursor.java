@@ -0,0 +1,150 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>キーセット方式で結果を順にページ単位で取得するためのカーソルです。</p>
+ * <p>取得開始位置(skip)を使うページングと異なり、前のページの最後のオブジェクトのソートキーからフィルタを作って次のページを取得します。そのため、どれだけ後ろのページでも取得にかかる時間は変わらず、取得の途中でデータが追加、削除されても重複や抜けが起きません。ソート順の最後には重複のないキーとして"_id"の昇順が自動的に加えられます。</p>
+ * <p>serializeで現在の位置を文字列として保存し、後でItem#resumeCursorなどで取得を再開できます。</p>
+ * <p>ソート順に指定したフィールドの値がnullまたは存在しないオブジェクトがあると、正しく次のページを取得できないことがあります。</p>
+ * @param <T> 取得するオブジェクトの型
+ * @see Item#cursor(String, Query)
+ * @see User#cursor(Query)
+ */
+public final class Cursor<T extends BaasdayObject> {
+    private static final String ID_FIELD = "_id";
+
+    private final String path;
+    private final APIClient.BaasdayObjectFactory<T> factory;
+    private final Map<String, Object> filter;
+    private final List<Query.FieldOrder> order;
+    private final int pageSize;
+    private int initialSkip;
+    private List<Object> lastKeys;
+    private boolean exhausted;
+
+    Cursor(final String path, final APIClient.BaasdayObjectFactory<T> factory, final Query query) {
+        this.path = path;
+        this.factory = factory;
+        this.filter = query != null && query.hasFilter() ? query.filter() : null;
+        final List<Query.FieldOrder> order = new ArrayList<Query.FieldOrder>();
+        boolean hasId = false;
+        if (query != null && query.hasOrder()) {
+            for (final Query.FieldOrder fieldOrder : query.order()) {
+                order.add(new Query.FieldOrder(fieldOrder.getField(), fieldOrder.isDescending()));
+                if (ID_FIELD.equals(fieldOrder.getField())) {
+                    hasId = true;
+                    break;
+                }
+            }
+        }
+        if (!hasId) order.add(new Query.FieldOrder(ID_FIELD));
+        this.order = order;
+        this.pageSize = query != null && query.hasLimit() ? Math.max(1, Math.min(query.limit(), LocalQuery.MAX_LIMIT)) : LocalQuery.MAX_LIMIT;
+        this.initialSkip = query != null && query.hasSkip() ? query.skip() : 0;
+    }
+
+    /**
+     * <p>まだ取得していないページがある可能性があるかどうかを返します。</p>
+     * @return 次のページを取得できる可能性がある場合はtrue、すべて取得し終えた場合はfalse
+     */
+    public synchronized boolean hasNext() {
+        return !this.exhausted;
+    }
+
+    private Map<String, Object> keysetFilter() {
+        final List<Map<String, Object>> alternatives = new ArrayList<Map<String, Object>>(this.order.size());
+        for (int index = 0; index < this.order.size(); ++index) {
+            final List<Map<String, Object>> conditions = new ArrayList<Map<String, Object>>(index + 1);
+            for (int previous = 0; previous < index; ++previous) {
+                conditions.add(Query.Filters.equal(this.order.get(previous).getField(), this.lastKeys.get(previous)));
+            }
+            final Query.FieldOrder fieldOrder = this.order.get(index);
+            final Object lastKey = this.lastKeys.get(index);
+            conditions.add(fieldOrder.isDescending() ? Query.Filters.lessThan(fieldOrder.getField(), lastKey) : Query.Filters.greaterThan(fieldOrder.getField(), lastKey));
+            alternatives.add(conditions.size() == 1 ? conditions.get(0) : Query.Filters.and(conditions));
+        }
+        return alternatives.size() == 1 ? alternatives.get(0) : Query.Filters.or(alternatives);
+    }
+
+    Query pageQuery() {
+        final Query query = new Query().order(this.order).limit(this.pageSize);
+        if (this.lastKeys == null) {
+            if (this.filter != null) query.filter(this.filter);
+            if (this.initialSkip > 0) query.skip(this.initialSkip);
+        } else {
+            final Map<String, Object> keysetFilter = this.keysetFilter();
+            final List<Map<String, Object>> filters = new ArrayList<Map<String, Object>>(2);
+            if (this.filter != null) filters.add(this.filter);
+            filters.add(keysetFilter);
+            query.filter(filters.size() == 1 ? keysetFilter : Query.Filters.and(filters));
+        }
+        return query;
+    }
+
+    /**
+     * <p>次のページを取得して返します。</p>
+     * <p>すべて取得し終えた後は空の結果を返します。</p>
+     * @return 取得結果。件数はフィルタを満たすオブジェクトのうち、このページ以降に残っている件数です
+     * @throws BaasdayException 取得に失敗した場合
+     */
+    public synchronized ListResult<T> next() throws BaasdayException {
+        if (this.exhausted) return new ListResult<T>(0, new ArrayList<T>());
+        final ListResult<T> page = APIClient.fetchAll(this.path, this.pageQuery(), this.factory);
+        final List<T> contents = page.getContents();
+        if (contents.size() < this.pageSize) this.exhausted = true;
+        if (!contents.isEmpty()) {
+            final Map<String, Object> lastValues = contents.get(contents.size() - 1).getValues();
+            final List<Object> lastKeys = new ArrayList<Object>(this.order.size());
+            for (final Query.FieldOrder fieldOrder : this.order) lastKeys.add(LocalQuery.valueAtPath(lastValues, fieldOrder.getField()));
+            this.lastKeys = lastKeys;
+            this.initialSkip = 0;
+        }
+        return page;
+    }
+
+    /**
+     * <p>現在の位置を文字列として返します。</p>
+     * <p>この文字列から取得を再開できます。文字列には抽出条件と最後に取得したオブジェクトのソートキーが含まれます。</p>
+     * @return 現在の位置を表す文字列
+     */
+    public synchronized String serialize() {
+        final Map<String, Object> state = new HashMap<String, Object>();
+        state.put("path", this.path);
+        if (this.filter != null) state.put("filter", this.filter);
+        state.put("order", Query.orderString(this.order));
+        state.put("limit", this.pageSize);
+        if (this.initialSkip > 0) state.put("skip", this.initialSkip);
+        if (this.lastKeys != null) state.put("lastKeys", this.lastKeys);
+        if (this.exhausted) state.put("exhausted", true);
+        return Utility.jsonString(state);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T extends BaasdayObject> Cursor<T> resume(final String serialized, final String path, final APIClient.BaasdayObjectFactory<T> factory) throws BaasdayException {
+        final Map<String, Object> state = Utility.mapFromJSONString(serialized);
+        if (!path.equals(state.get("path"))) throw new BaasdayException("The cursor was created for " + state.get("path") + ", not " + path + ".");
+        final Query query = new Query();
+        if (state.get("filter") instanceof Map) query.filter((Map<String, Object>) state.get("filter"));
+        if (state.get("order") instanceof String) {
+            final List<Query.FieldOrder> order = new ArrayList<Query.FieldOrder>();
+            for (final String field : ((String) state.get("order")).split(",")) {
+                order.add(field.startsWith("-") ? new Query.FieldOrder(field.substring(1), true) : new Query.FieldOrder(field));
+            }
+            query.order(order);
+        }
+        if (state.get("limit") instanceof Number) query.limit(((Number) state.get("limit")).intValue());
+        if (state.get("skip") instanceof Number) query.skip(((Number) state.get("skip")).intValue());
+        final Cursor<T> cursor = new Cursor<T>(path, factory, query);
+        if (state.get("lastKeys") instanceof List) {
+            final List<Object> lastKeys = (List<Object>) state.get("lastKeys");
+            if (lastKeys.size() != cursor.order.size()) throw new BaasdayException("The cursor is broken: " + serialized);
+            cursor.lastKeys = lastKeys;
+        }
+        cursor.exhausted = Boolean.TRUE.equals(state.get("exhausted"));
+        return cursor;
+    }
+}
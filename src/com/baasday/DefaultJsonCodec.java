@@ -0,0 +1,55 @@
+package com.baasday;
+
+import java.nio.CharBuffer;
+import java.util.Map;
+
+/**
+ * <p>既定のJSONの変換処理です。</p>
+ * <p>外部のライブラリに依存せず、文字の配列を直接走査して変換します。Androidのほか、org.jsonが利用できない通常のJava実行環境でも動作します。</p>
+ * @see JsonCodec
+ */
+public final class DefaultJsonCodec implements JsonCodec {
+    private final boolean internStringValues;
+
+    /**
+     * <p>オブジェクトを作成します。</p>
+     * <p>フィールド名は共有の上限付きの表を通じて再利用されます。値の文字列は再利用しません。</p>
+     */
+    public DefaultJsonCodec() {
+        this(false);
+    }
+
+    /**
+     * <p>文字列の値を再利用するかどうかを指定してオブジェクトを作成します。</p>
+     * <p>trueを指定すると、列挙値やコレクション名のような短い文字列の値も、フィールド名と同じく共有の上限付きの表を通じて再利用されます。同じ値が繰り返し現れる大量のオブジェクトを取得する場合にメモリの使用量を減らせます。</p>
+     * @param internStringValues 短い文字列の値を再利用する場合はtrue
+     */
+    public DefaultJsonCodec(final boolean internStringValues) {
+        this.internStringValues = internStringValues;
+    }
+
+    public String encode(final Map<String, Object> values) {
+        final JsonWriter writer = new JsonWriter();
+        writer.writeValue(values);
+        return writer.toString();
+    }
+
+    public Map<String, Object> decode(final CharSequence json) throws BaasdayException {
+        if (json instanceof CharBuffer && ((CharBuffer) json).hasArray()) {
+            final CharBuffer buffer = (CharBuffer) json;
+            return new JsonReader(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), this.internStringValues).readDocument();
+        }
+        final int length = json.length();
+        final char[] chars = BufferPool.acquireChars(length);
+        try {
+            if (json instanceof String) {
+                ((String) json).getChars(0, length, chars, 0);
+            } else {
+                for (int index = 0; index < length; ++index) chars[index] = json.charAt(index);
+            }
+            return new JsonReader(chars, 0, length, this.internStringValues).readDocument();
+        } finally {
+            BufferPool.releaseChars(chars);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.baasday;
+
+/**
+ * <p>ライブラリがバックグラウンドで行う処理を実行する方法です。</p>
+ * <p>楽観的な更新のサーバへの反映、Bootstrapによる並行した取得、一括更新などはこの方法で実行されます。</p>
+ * @see Baasday#setExecutionMode(ExecutionMode)
+ */
+public enum ExecutionMode {
+    /**
+     * <p>上限のあるスレッドプールで実行します。これが既定の方法です。</p>
+     */
+    BOUNDED_POOL,
+
+    /**
+     * <p>処理ごとに仮想スレッドを作成して実行します。</p>
+     * <p>仮想スレッドを利用できない実行環境(Androidや古いJava)では、BOUNDED_POOLと同じ方法で実行します。多数の処理を同時に行う場合は、RequestScheduler#setMaxConcurrencyで同時実行数の上限も引き上げてください。</p>
+     */
+    VIRTUAL_THREADS
+}
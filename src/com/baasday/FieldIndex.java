@@ -0,0 +1,150 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+abstract class FieldIndex {
+    private final String field;
+    private final Map<String, List<Object>> keysById = new HashMap<String, List<Object>>();
+
+    FieldIndex(final String field) {
+        this.field = field;
+    }
+
+    String getField() {
+        return this.field;
+    }
+
+    abstract boolean isSorted();
+
+    abstract Map<Object, Set<String>> entries();
+
+    abstract List<Object> keysOf(final Object value);
+
+    abstract Object normalizeKey(final Object value);
+
+    void add(final String id, final Map<String, Object> values) {
+        final List<Object> keys = this.keysOf(LocalQuery.valueAtPath(values, this.field));
+        this.keysById.put(id, keys);
+        for (final Object key : keys) {
+            Set<String> ids = this.entries().get(key);
+            if (ids == null) {
+                ids = new LinkedHashSet<String>();
+                this.entries().put(key, ids);
+            }
+            ids.add(id);
+        }
+    }
+
+    void remove(final String id) {
+        final List<Object> keys = this.keysById.remove(id);
+        if (keys == null) return;
+        for (final Object key : keys) {
+            final Set<String> ids = this.entries().get(key);
+            if (ids == null) continue;
+            ids.remove(id);
+            if (ids.isEmpty()) this.entries().remove(key);
+        }
+    }
+
+    Set<String> lookup(final Object value) {
+        final Set<String> ids = this.entries().get(this.normalizeKey(value));
+        return ids == null ? Collections.<String>emptySet() : ids;
+    }
+
+    static boolean isIndexableKey(final Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Date;
+    }
+
+    static final class Hash extends FieldIndex {
+        private final Map<Object, Set<String>> entries = new HashMap<Object, Set<String>>();
+
+        Hash(final String field) {
+            super(field);
+        }
+
+        boolean isSorted() {
+            return false;
+        }
+
+        Map<Object, Set<String>> entries() {
+            return this.entries;
+        }
+
+        List<Object> keysOf(final Object value) {
+            if (!(value instanceof List)) return Collections.singletonList(this.normalizeKey(value));
+            final List<Object> keys = new ArrayList<Object>(((List) value).size());
+            for (final Object element : (List) value) keys.add(this.normalizeKey(element));
+            return keys;
+        }
+
+        Object normalizeKey(final Object value) {
+            if (!(value instanceof Number)) return value;
+            final double doubleValue = ((Number) value).doubleValue();
+            if (doubleValue == Math.rint(doubleValue) && !Double.isInfinite(doubleValue) && Math.abs(doubleValue) < 0x1p53) return (long) doubleValue;
+            return doubleValue;
+        }
+    }
+
+    static final class Sorted extends FieldIndex {
+        private final TreeMap<Object, Set<String>> entries = new TreeMap<Object, Set<String>>(LocalQuery.valueComparator());
+        private final Set<String> listValuedIds = new HashSet<String>();
+
+        Sorted(final String field) {
+            super(field);
+        }
+
+        boolean isSorted() {
+            return true;
+        }
+
+        Map<Object, Set<String>> entries() {
+            return this.entries;
+        }
+
+        boolean hasListValues() {
+            return !this.listValuedIds.isEmpty();
+        }
+
+        List<Object> keysOf(final Object value) {
+            return Collections.singletonList(value);
+        }
+
+        Object normalizeKey(final Object value) {
+            return value;
+        }
+
+        void add(final String id, final Map<String, Object> values) {
+            if (LocalQuery.valueAtPath(values, this.getField()) instanceof List) this.listValuedIds.add(id);
+            super.add(id, values);
+        }
+
+        void remove(final String id) {
+            this.listValuedIds.remove(id);
+            super.remove(id);
+        }
+
+        Collection<Set<String>> range(final Object lower, final boolean lowerInclusive, final Object upper, final boolean upperInclusive, final boolean descending) {
+            NavigableMap<Object, Set<String>> range = this.entries;
+            if (lower != null && upper != null) {
+                if (LocalQuery.compareValues(lower, upper) > 0) return Collections.emptyList();
+                range = range.subMap(lower, lowerInclusive, upper, upperInclusive);
+            } else if (lower != null) {
+                range = range.tailMap(lower, lowerInclusive);
+            } else if (upper != null) {
+                range = range.headMap(upper, upperInclusive);
+            }
+            return descending ? range.descendingMap().values() : range.values();
+        }
+    }
+}
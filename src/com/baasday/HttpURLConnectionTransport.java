@@ -0,0 +1,77 @@
+package com.baasday;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.Map;
+
+/**
+ * <p>HttpURLConnectionを使ってbaasdayサーバと通信するTransportです。これが既定のTransportです。</p>
+ * <p>通信中はリクエストごとにひとつのスレッドがブロックされます。</p>
+ * @see Transport
+ */
+public final class HttpURLConnectionTransport implements Transport {
+    private static final class ConnectionResponse implements Transport.Response {
+        private final HttpURLConnection connection;
+        private final int statusCode;
+        private final InputStream body;
+
+        ConnectionResponse(final HttpURLConnection connection, final int statusCode, final InputStream body) {
+            this.connection = connection;
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return this.statusCode;
+        }
+
+        public String getHeader(final String name) {
+            return this.connection.getHeaderField(name);
+        }
+
+        public int getContentLength() {
+            return this.connection.getContentLength();
+        }
+
+        public InputStream getBody() {
+            return this.body;
+        }
+
+        public void close() {
+            try {
+                this.body.close();
+            } catch (final IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * <p>オブジェクトを作成します。</p>
+     */
+    public HttpURLConnectionTransport() {
+    }
+
+    public Transport.Response execute(final Transport.Request request) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) request.getUrl().openConnection();
+        connection.setRequestMethod(request.getMethod());
+        for (final Map.Entry<String, String> header : request.getHeaders().entrySet()) connection.setRequestProperty(header.getKey(), header.getValue());
+        final byte[] body = request.getBody();
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            final OutputStream outputStream = connection.getOutputStream();
+            try {
+                outputStream.write(body);
+            } finally {
+                outputStream.close();
+            }
+        }
+        final int statusCode = connection.getResponseCode();
+        InputStream responseBody = statusCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (responseBody == null) responseBody = new ByteArrayInputStream(new byte[0]);
+        return new ConnectionResponse(connection, statusCode, responseBody);
+    }
+}
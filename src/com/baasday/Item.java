@@ -1,6 +1,15 @@
 package com.baasday;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * <p>baasdayサーバ上に保存される汎用的なオブジェクトです。</p>
@@ -56,7 +65,10 @@ public class Item extends BaasdayObject implements UpdatableObject, DeletableObj
      * @throws BaasdayException 追加に失敗した場合
      */
     public static Item create(final String collectionName, final Map<String, Object> values) throws BaasdayException {
-        return APIClient.create(collectionName, values, new ItemFactory(collectionName));
+        final Item item = APIClient.create(collectionName, values, new ItemFactory(collectionName));
+        CountCache.invalidate(collectionAPIPath(collectionName));
+        LocalCollection.itemChanged(item);
+        return item;
     }
 
     /**
@@ -70,6 +82,63 @@ public class Item extends BaasdayObject implements UpdatableObject, DeletableObj
         return create(collectionName, null);
     }
 
+    /**
+     * <p>指定されたコレクションに複数のアイテムを追加します。</p>
+     * <p>valuesListは先頭から順に必要になった分だけ読み出され、baasdayサーバへの追加は同時にmaxInFlight件まで並行して行われます。並行して行われている追加がmaxInFlight件に達している間は、次のアイテムは読み出されません。</p>
+     * <p>一部のアイテムの追加に失敗しても残りのアイテムの追加は続けられ、失敗は結果に記録されます。</p>
+     * @param collectionName コレクション名
+     * @param valuesList 追加するアイテムが持つ値の並び
+     * @param maxInFlight 同時に行う追加の最大数
+     * @return 追加の結果
+     * @throws BaasdayException 追加の完了を待っている間に割り込まれた場合
+     * @see BulkCreateResult
+     */
+    public static BulkCreateResult createAll(final String collectionName, final Iterable<Map<String, Object>> valuesList, final int maxInFlight) throws BaasdayException {
+        final BulkCreateResult result = new BulkCreateResult();
+        final RequestPriority priority = RequestScheduler.getCurrentPriority();
+        final BoundedPipeline pipeline = new BoundedPipeline(maxInFlight);
+        final long startedAt = System.nanoTime();
+        try {
+            for (final Map<String, Object> values : valuesList) {
+                final int index = result.reserve();
+                pipeline.submit(new Callable<Void>() {
+                    public Void call() {
+                        final RequestPriority previousPriority = RequestScheduler.setCurrentPriority(priority);
+                        try {
+                            result.created(index, create(collectionName, values));
+                        } catch (final BaasdayException exception) {
+                            result.failed(index, exception);
+                        } catch (final RuntimeException exception) {
+                            result.failed(index, new BaasdayException(exception));
+                        } finally {
+                            RequestScheduler.setCurrentPriority(previousPriority);
+                        }
+                        return null;
+                    }
+                });
+            }
+            pipeline.awaitAll();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new BaasdayException(exception);
+        }
+        result.finish(System.nanoTime() - startedAt);
+        return result;
+    }
+
+    /**
+     * <p>指定されたコレクションに複数のアイテムを追加します。</p>
+     * <p>これはcreateAll(collectionName, valuesList, 4)と同じです。</p>
+     * @param collectionName コレクション名
+     * @param valuesList 追加するアイテムが持つ値の並び
+     * @return 追加の結果
+     * @throws BaasdayException 追加の完了を待っている間に割り込まれた場合
+     * @see #createAll(String, Iterable, int)
+     */
+    public static BulkCreateResult createAll(final String collectionName, final Iterable<Map<String, Object>> valuesList) throws BaasdayException {
+        return createAll(collectionName, valuesList, BULK_CONCURRENCY);
+    }
+
     /**
      * <p>指定されたコレクション内の指定されたIDを持つアイテムを取得して返します。</p>
      * @param collectionName コレクション名
@@ -93,6 +162,19 @@ public class Item extends BaasdayObject implements UpdatableObject, DeletableObj
         return APIClient.fetchAll(collectionAPIPath(collectionName), query, new ItemFactory(collectionName));
     }
 
+    /**
+     * <p>指定されたコレクション内のアイテムを、コンパイルされた抽出条件で取得して返します。</p>
+     * <p>リクエストパラメータはコンパイル時に計算したものがそのまま使われます。最大取得件数を指定しない場合や101以上を指定した場合は、最大で100件返します。</p>
+     * @param collectionName コレクション名
+     * @param query コンパイルされた抽出条件
+     * @return 取得結果。コレクションが存在しない場合は空の結果
+     * @throws BaasdayException 取得に失敗した場合、抽出条件が正しくない場合
+     * @see Query#compile()
+     */
+    public static ListResult<Item> fetchAll(final String collectionName, final CompiledQuery query) throws BaasdayException {
+        return APIClient.fetchAll(collectionAPIPath(collectionName), query, new ItemFactory(collectionName));
+    }
+
     /**
      * <p>指定されたコレクション内のアイテムを取得して返します。</p>
      * <p>アイテムは最大で100件返します。</p>
@@ -101,7 +183,324 @@ public class Item extends BaasdayObject implements UpdatableObject, DeletableObj
      * @throws BaasdayException 取得に失敗した場合
      */
     public static ListResult<Item> fetchAll(final String collectionName) throws BaasdayException {
-        return fetchAll(collectionName, null);
+        return fetchAll(collectionName, (Query) null);
+    }
+
+    /**
+     * <p>指定されたコレクション内の、抽出条件を満たすアイテムの件数を返します。</p>
+     * <p>アイテムの内容は取得せず、件数だけをbaasdayサーバに問い合わせます。結果は短い時間(初期値は2秒)保持され、同じ抽出条件による問い合わせには保持している結果を返します。同じ抽出条件で同時に呼び出された場合、baasdayサーバへの問い合わせは一度だけ行われます。このライブラリを通じてコレクション内のアイテムを追加、更新、削除すると、保持している結果は破棄されます。</p>
+     * <p>抽出条件はフィルタだけが有効です。</p>
+     * @param collectionName コレクション名
+     * @param query 抽出条件。nullの場合はすべてのアイテムが対象です
+     * @return 件数。コレクションが存在しない場合は0
+     * @throws BaasdayException 問い合わせに失敗した場合、抽出条件が正しくない場合
+     * @see Baasday#setCountCacheMillis(long)
+     */
+    public static int count(final String collectionName, final Query query) throws BaasdayException {
+        return CountCache.count(collectionAPIPath(collectionName), query);
+    }
+
+    /**
+     * <p>指定されたコレクション内に、抽出条件を満たすアイテムが存在するかどうかを返します。</p>
+     * <p>件数はcountと同じ方法で問い合わせられ、結果も共有されます。</p>
+     * @param collectionName コレクション名
+     * @param query 抽出条件。nullの場合はすべてのアイテムが対象です
+     * @return 一件以上存在する場合はtrue
+     * @throws BaasdayException 問い合わせに失敗した場合、抽出条件が正しくない場合
+     * @see #count(String, Query)
+     */
+    public static boolean exists(final String collectionName, final Query query) throws BaasdayException {
+        return count(collectionName, query) > 0;
+    }
+
+    /**
+     * <p>指定されたコレクション内のアイテムを順に送り出すPublisherを返します。</p>
+     * <p>アイテムは要求された分だけ、baasdayサーバから最大100件ずつ取得しながら送り出されます。取得はSubscriptionで要求されるまで行われず、途中で取り消すと以降の取得は行われません。抽出条件の取得開始位置と最大取得件数はすべてのページを通じた範囲として扱われ、最大待ち時間は無視されます。</p>
+     * <p>取得はバックグラウンドのスレッドで、subscribeを呼び出したスレッドのリクエストの優先度で行われます。</p>
+     * @param collectionName コレクション名
+     * @param query 抽出条件。nullの場合はすべてのアイテム
+     * @return アイテムを送り出すPublisher
+     */
+    public static Publisher<Item> publishAll(final String collectionName, final Query query) {
+        return new QueryPublisher<Item>(collectionAPIPath(collectionName), query, new ItemFactory(collectionName));
+    }
+
+    /**
+     * <p>指定されたコレクション内のアイテムをキーセット方式で順にページ単位で取得するCursorを返します。</p>
+     * <p>抽出条件のソート順の後ろに"_id"の昇順が加えられ、最大取得件数がページの大きさ(最大100件)として使われます。取得開始位置は最初のページにだけ使われ、最大待ち時間は無視されます。</p>
+     * @param collectionName コレクション名
+     * @param query 抽出条件。nullの場合はすべてのアイテムを"_id"の昇順で取得
+     * @return Cursor
+     * @see Cursor
+     */
+    public static Cursor<Item> cursor(final String collectionName, final Query query) {
+        return new Cursor<Item>(collectionAPIPath(collectionName), new ItemFactory(collectionName), query);
+    }
+
+    /**
+     * <p>Cursor#serializeで保存した位置から取得を再開するCursorを返します。</p>
+     * @param collectionName コレクション名
+     * @param serializedCursor Cursor#serializeが返した文字列
+     * @return Cursor
+     * @throws BaasdayException 文字列が指定されたコレクションのCursorのものではない場合
+     */
+    public static Cursor<Item> resumeCursor(final String collectionName, final String serializedCursor) throws BaasdayException {
+        return Cursor.resume(serializedCursor, collectionAPIPath(collectionName), new ItemFactory(collectionName));
+    }
+
+    /**
+     * <p>指定されたコレクション内のアイテムを取得して、列形式の結果として返します。</p>
+     * <p>最大取得件数を超えない範囲で、baasdayサーバから最大100件ずつ繰り返し取得します。取得した値はページごとに列へ追加され、アイテムのオブジェクトは作成されません。抽出条件の取得開始位置と最大取得件数はすべてのページを通じた範囲として扱われ、最大待ち時間は無視されます。</p>
+     * @param collectionName コレクション名
+     * @param query 抽出条件。nullの場合はすべてのアイテム
+     * @return 列形式の取得結果
+     * @throws BaasdayException 取得に失敗した場合、抽出条件が正しくない場合
+     * @see ColumnarResult
+     */
+    public static ColumnarResult fetchAllColumnar(final String collectionName, final Query query) throws BaasdayException {
+        final Query baseQuery = query == null ? new Query() : query.copy().unsetWait();
+        final ColumnarResult result = new ColumnarResult();
+        int skip = baseQuery.hasSkip() ? baseQuery.skip() : 0;
+        int remaining = baseQuery.hasLimit() ? baseQuery.limit() : Integer.MAX_VALUE;
+        while (remaining > 0) {
+            final int pageSize = Math.min(LocalQuery.MAX_LIMIT, remaining);
+            final ListResult<Map<String, Object>> page = APIClient.fetchAll(collectionAPIPath(collectionName), baseQuery.copy().skip(skip).limit(pageSize));
+            result.setCount(page.getCount());
+            for (final Map<String, Object> values : page.getContents()) result.add(values);
+            skip += page.getContents().size();
+            remaining -= page.getContents().size();
+            if (page.getContents().size() < pageSize) break;
+        }
+        return result.seal();
+    }
+
+    private static final int BULK_CONCURRENCY = 4;
+
+    private static boolean isBulkEndpointUnavailable(final BaasdayException exception) {
+        final int statusCode = exception.getStatusCode();
+        return statusCode == 404 || statusCode == 405 || statusCode == 501;
+    }
+
+    private static Query filterOnly(final Query query) {
+        return query != null && query.hasFilter() ? new Query().filter(query.filter()) : null;
+    }
+
+    private static interface ItemOperation {
+        public void apply(final Item item) throws BaasdayException;
+    }
+
+    private static int applyToMatchingItems(final String collectionName, final Query query, final ItemOperation operation) throws BaasdayException {
+        final Map<String, Object> filter = query != null && query.hasFilter() ? query.filter() : null;
+        final RequestPriority priority = RequestScheduler.getCurrentPriority();
+        final BoundedPipeline pipeline = new BoundedPipeline(BULK_CONCURRENCY);
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        try {
+            String lastId = null;
+            while (true) {
+                Map<String, Object> pageFilter = filter;
+                if (lastId != null) {
+                    final Map<String, Object> afterLastId = Query.Filters.greaterThan("_id", lastId);
+                    if (filter == null) {
+                        pageFilter = afterLastId;
+                    } else {
+                        final List<Map<String, Object>> filters = new ArrayList<Map<String, Object>>(2);
+                        filters.add(filter);
+                        filters.add(afterLastId);
+                        pageFilter = Query.Filters.and(filters);
+                    }
+                }
+                final List<Item> page = fetchAll(collectionName, new Query().filter(pageFilter).order("_id").limit(LocalQuery.MAX_LIMIT)).getContents();
+                for (final Item item : page) {
+                    futures.add(pipeline.submit(new Callable<Void>() {
+                        public Void call() throws BaasdayException {
+                            final RequestPriority previousPriority = RequestScheduler.setCurrentPriority(priority);
+                            try {
+                                operation.apply(item);
+                            } finally {
+                                RequestScheduler.setCurrentPriority(previousPriority);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                if (page.size() < LocalQuery.MAX_LIMIT) break;
+                lastId = page.get(page.size() - 1).getId();
+            }
+            pipeline.awaitAll();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new BaasdayException(exception);
+        }
+        int affectedCount = 0;
+        Throwable firstFailure = null;
+        for (final Future<Void> future : futures) {
+            try {
+                future.get();
+                ++affectedCount;
+            } catch (final ExecutionException exception) {
+                if (firstFailure == null) firstFailure = exception.getCause();
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new BaasdayException(exception);
+            }
+        }
+        if (firstFailure != null) throw new BaasdayException((futures.size() - affectedCount) + " of " + futures.size() + " items could not be processed.", firstFailure);
+        return affectedCount;
+    }
+
+    private static final int MAX_FETCH_MANY_URL_LENGTH = 2000;
+
+    private static List<List<Object>> idChunks(final String collectionName, final Collection<String> ids) {
+        final int baseLength = Baasday.getApiURLRoot().length() + collectionAPIPath(collectionName).length() + new Query().filter(Query.Filters.in("_id", new ArrayList<Object>())).limit(LocalQuery.MAX_LIMIT).toQueryString().length() + 1;
+        final List<List<Object>> chunks = new ArrayList<List<Object>>();
+        List<Object> chunk = new ArrayList<Object>();
+        int length = baseLength;
+        for (final String id : ids) {
+            final int idLength = Utility.urlEncode("\"" + id + "\",").length();
+            if (!chunk.isEmpty() && (chunk.size() == LocalQuery.MAX_LIMIT || length + idLength > MAX_FETCH_MANY_URL_LENGTH)) {
+                chunks.add(chunk);
+                chunk = new ArrayList<Object>();
+                length = baseLength;
+            }
+            chunk.add(id);
+            length += idLength;
+        }
+        if (!chunk.isEmpty()) chunks.add(chunk);
+        return chunks;
+    }
+
+    private static List<Item> fetchChunk(final String collectionName, final List<Object> ids) throws BaasdayException {
+        return fetchAll(collectionName, new Query().filter(Query.Filters.in("_id", ids)).limit(LocalQuery.MAX_LIMIT)).getContents();
+    }
+
+    /**
+     * <p>指定されたコレクション内の、指定されたIDを持つアイテムをまとめて取得して返します。</p>
+     * <p>コレクションがLocalCollection#attachで結び付けられている場合、そこに保持されているアイテムはbaasdayサーバから取得せずにそのまま返します。残りのIDはURLが長くなりすぎないように分割され、IDのリストによる抽出条件で取得されます。分割された取得は同時に一定数まで並行して行われます。</p>
+     * @param collectionName コレクション名
+     * @param ids IDのコレクション
+     * @return IDをキー、アイテムを値とするマップ。並び順はidsの順で、存在しないIDは含まれません
+     * @throws BaasdayException 取得に失敗した場合
+     */
+    public static Map<String, Item> fetchMany(final String collectionName, final Collection<String> ids) throws BaasdayException {
+        final Set<String> uniqueIds = new LinkedHashSet<String>();
+        for (final String id : ids) {
+            if (id != null) uniqueIds.add(id);
+        }
+        final Map<String, Item> found = new LinkedHashMap<String, Item>(Utility.hashMapCapacity(uniqueIds.size()));
+        final List<String> missingIds = new ArrayList<String>(uniqueIds.size());
+        final LocalCollection replica = LocalCollection.attached(collectionName);
+        for (final String id : uniqueIds) {
+            final Item cached = replica == null ? null : replica.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        final List<List<Object>> chunks = idChunks(collectionName, missingIds);
+        final List<Item> fetched = new ArrayList<Item>(missingIds.size());
+        if (chunks.size() == 1) {
+            fetched.addAll(fetchChunk(collectionName, chunks.get(0)));
+        } else if (chunks.size() > 1) {
+            final RequestPriority priority = RequestScheduler.getCurrentPriority();
+            final BoundedPipeline pipeline = new BoundedPipeline(BULK_CONCURRENCY);
+            final List<Future<List<Item>>> futures = new ArrayList<Future<List<Item>>>(chunks.size());
+            try {
+                for (final List<Object> chunk : chunks) {
+                    futures.add(pipeline.submit(new Callable<List<Item>>() {
+                        public List<Item> call() throws BaasdayException {
+                            final RequestPriority previousPriority = RequestScheduler.setCurrentPriority(priority);
+                            try {
+                                return fetchChunk(collectionName, chunk);
+                            } finally {
+                                RequestScheduler.setCurrentPriority(previousPriority);
+                            }
+                        }
+                    }));
+                }
+                for (final Future<List<Item>> future : futures) fetched.addAll(future.get());
+            } catch (final InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new BaasdayException(exception);
+            } catch (final ExecutionException exception) {
+                if (exception.getCause() instanceof BaasdayException) throw (BaasdayException) exception.getCause();
+                throw new BaasdayException(exception.getCause());
+            }
+        }
+        final Map<String, Item> fetchedById = new LinkedHashMap<String, Item>(Utility.hashMapCapacity(fetched.size()));
+        for (final Item item : fetched) fetchedById.put(item.getId(), item);
+        final Map<String, Item> result = new LinkedHashMap<String, Item>(Utility.hashMapCapacity(uniqueIds.size()));
+        for (final String id : uniqueIds) {
+            final Item item = found.containsKey(id) ? found.get(id) : fetchedById.get(id);
+            if (item != null) result.put(id, item);
+        }
+        return result;
+    }
+
+    /**
+     * <p>指定されたコレクション内の、抽出条件を満たすすべてのアイテムを更新します。</p>
+     * <p>フィルタはbaasdayサーバに一度だけ送られ、サーバ上でまとめて更新されます。コレクションがLocalCollection#attachで結び付けられている場合、そこに保持されているアイテムのうち抽出条件を満たすものにも同じ更新を適用します。サーバがこの操作に対応していない場合は、該当するアイテムを取得して一件ずつ更新します。このときのリクエストは同時に一定数まで並行して行われます。</p>
+     * <p>抽出条件はフィルタだけが有効です。</p>
+     * @param collectionName コレクション名
+     * @param query 抽出条件。nullの場合はすべてのアイテムが対象です
+     * @param operations 更新処理
+     * @return 更新したアイテムの件数
+     * @throws BaasdayException 更新内容が正しくない場合、更新に失敗した場合
+     * @see UpdateOperations
+     */
+    @SuppressWarnings("unchecked")
+    public static int updateAll(final String collectionName, final Query query, final Map<String, Object> ... operations) throws BaasdayException {
+        final Map<String, Object> values = UpdateOperations.mergeOperations(operations);
+        try {
+            final int count = APIClient.countFromListAPIResult(new APIClient().put(collectionAPIPath(collectionName)).query(filterOnly(query)).requestJson(values).doRequest());
+            final LocalCollection replica = LocalCollection.attached(collectionName);
+            if (replica != null) {
+                final Map<String, Object> filter = query != null && query.hasFilter() ? query.filter() : null;
+                for (final Item item : replica.getItems()) {
+                    if (!LocalQuery.matches(filter, item)) continue;
+                    item.setValues(UpdateApplier.apply(item.getValues(), values));
+                    replica.put(item);
+                }
+            }
+            return count;
+        } catch (final BaasdayException exception) {
+            if (!isBulkEndpointUnavailable(exception)) throw exception;
+        }
+        return applyToMatchingItems(collectionName, query, new ItemOperation() {
+            public void apply(final Item item) throws BaasdayException {
+                item.update(values);
+            }
+        });
+    }
+
+    /**
+     * <p>指定されたコレクション内の、抽出条件を満たすすべてのアイテムを削除します。</p>
+     * <p>フィルタはbaasdayサーバに一度だけ送られ、サーバ上でまとめて削除されます。サーバがこの操作に対応していない場合は、該当するアイテムを取得して一件ずつ削除します。このときのリクエストは同時に一定数まで並行して行われます。</p>
+     * <p>抽出条件はフィルタだけが有効です。</p>
+     * @param collectionName コレクション名
+     * @param query 抽出条件。nullの場合はすべてのアイテムが対象です
+     * @return 削除したアイテムの件数
+     * @throws BaasdayException 削除に失敗した場合
+     */
+    public static int deleteAll(final String collectionName, final Query query) throws BaasdayException {
+        try {
+            final int count = APIClient.countFromListAPIResult(new APIClient().delete(collectionAPIPath(collectionName)).query(filterOnly(query)).doRequest());
+            final LocalCollection replica = LocalCollection.attached(collectionName);
+            if (replica != null) {
+                final Map<String, Object> filter = query != null && query.hasFilter() ? query.filter() : null;
+                for (final Item item : replica.getItems()) {
+                    if (LocalQuery.matches(filter, item)) replica.remove(item.getId());
+                }
+            }
+            return count;
+        } catch (final BaasdayException exception) {
+            if (!isBulkEndpointUnavailable(exception)) throw exception;
+        }
+        return applyToMatchingItems(collectionName, query, new ItemOperation() {
+            public void apply(final Item item) throws BaasdayException {
+                item.delete();
+            }
+        });
     }
 
     /**
@@ -114,6 +513,74 @@ public class Item extends BaasdayObject implements UpdatableObject, DeletableObj
      */
     public void update(final Map<String, Object> values) throws BaasdayException {
         super.update(values);
+        LocalCollection.itemChanged(this);
+    }
+
+    /**
+     * <p>このアイテムを更新します。更新内容は即時にこのアイテムの値に反映され、baasdayサーバへの反映はバックグラウンドで行われます。</p>
+     * <p>$inc、$push、$pushUnique、$pull、$unsetと値の変更は、サーバの応答を待たずにこのアイテムの値に適用されます。サーバから応答が返るとその値で置き換えられ、更新に失敗した場合は更新前の値に戻されます。同じアイテムに対する更新は呼び出した順にサーバに送られます。</p>
+     * <p>返されるFutureでサーバへの反映の完了を待てます。更新に失敗した場合はFuture#getがBaasdayExceptionを原因とするExecutionExceptionをスローします。</p>
+     * @param values 更新するフィールドと値
+     * @param returnMinimal trueの場合は更新後のアイテム全体を返さないようにサーバに求め、レスポンスを小さくします。このときアイテムの値はローカルで適用した結果にサーバが返した値を重ねたものになります
+     * @return サーバへの反映の完了を表すFuture
+     * @throws BaasdayException 更新内容をローカルで適用できない場合
+     * @see UpdateOperations
+     */
+    public Future<Void> updateOptimistically(final Map<String, Object> values, final boolean returnMinimal) throws BaasdayException {
+        return super.updateOptimistically(values, returnMinimal);
+    }
+
+    /**
+     * <p>このアイテムを更新します。更新内容は即時にこのアイテムの値に反映され、baasdayサーバへの反映はバックグラウンドで行われます。</p>
+     * <p>これはupdateOptimistically(values, false)と同じです。</p>
+     * @param values 更新するフィールドと値
+     * @return サーバへの反映の完了を表すFuture
+     * @throws BaasdayException 更新内容をローカルで適用できない場合
+     * @see #updateOptimistically(Map, boolean)
+     */
+    public Future<Void> updateOptimistically(final Map<String, Object> values) throws BaasdayException {
+        return this.updateOptimistically(values, false);
+    }
+
+    void valuesChanged() throws BaasdayException {
+        LocalCollection.itemChanged(this);
+    }
+
+    /**
+     * <p>このアイテムが最後に取得または更新した時点から変更されていない場合だけ、このアイテムを更新します。</p>
+     * <p>このアイテムが持つ更新日時(_updatedAt)を前提条件としてbaasdayサーバに送ります。他のクライアントによって先に更新されていた場合はBaasdayConflictExceptionがスローされ、アイテムは更新されません。</p>
+     * @param values 更新するフィールドと値
+     * @throws BaasdayConflictException 他のクライアントによって先に更新されていた場合
+     * @throws BaasdayException 更新内容が正しくない場合、サーバでの更新に失敗した場合
+     * @see UpdateOperations
+     */
+    public void updateIfUnmodified(final Map<String, Object> values) throws BaasdayException {
+        super.updateIfUnmodified(values);
+        LocalCollection.itemChanged(this);
+    }
+
+    /**
+     * <p>条件付きの更新を、競合しなくなるまで指定された回数まで繰り返します。</p>
+     * <p>まずこのアイテムの現在の値でmergerを呼び出し、返された内容でupdateIfUnmodifiedを行います。競合した場合は最新の値を取得し直し、mergerを再び呼び出して更新をやり直します。</p>
+     * @param merger 現在の値から更新内容を作る処理
+     * @param maxAttempts 更新を試みる最大の回数
+     * @return 更新した場合はtrue、mergerがnullを返して更新を中止した場合はfalse
+     * @throws BaasdayConflictException 指定された回数だけ試みてもすべて競合した場合
+     * @throws BaasdayException 更新内容が正しくない場合、取得や更新に失敗した場合
+     */
+    public boolean updateWithRetry(final UpdateMerger<Item> merger, final int maxAttempts) throws BaasdayException {
+        final boolean updated;
+        try {
+            updated = this.retryConditionalUpdate(merger, maxAttempts);
+        } catch (final BaasdayException exception) {
+            try {
+                LocalCollection.itemChanged(this);
+            } catch (final BaasdayException ignored) {
+            }
+            throw exception;
+        }
+        LocalCollection.itemChanged(this);
+        return updated;
     }
 
     /**
@@ -122,5 +589,6 @@ public class Item extends BaasdayObject implements UpdatableObject, DeletableObj
      */
     public void delete() throws BaasdayException {
         super.delete();
+        LocalCollection.itemDeleted(this);
     }
 }
@@ -0,0 +1,29 @@
+package com.baasday;
+
+import java.util.Map;
+
+/**
+ * <p>baasdayサーバとの通信に使うJSONの変換処理を表すインターフェースです。</p>
+ * <p>Baasday#setJsonCodecで設定すると、リクエストとレスポンスのJSONはすべてこのインターフェースを通じて変換されます。既定ではDefaultJsonCodecが使われます。他のJSONライブラリを使う場合はこのインターフェースを実装したアダプタを設定してください。</p>
+ * <p>値はオブジェクトのフィールドの値と同じく、Map、List、String、Number、Boolean、Date、nullで表されます。Dateは{"$type": "datetime", "$value": RFC 3339形式の文字列}というJSONオブジェクトとの間で変換する必要があります。</p>
+ * <p>実装は複数のスレッドから同時に呼び出されても安全でなければなりません。</p>
+ * @see Baasday#setJsonCodec(JsonCodec)
+ * @see DefaultJsonCodec
+ * @see OrgJsonCodec
+ */
+public interface JsonCodec {
+    /**
+     * <p>マップをJSONの文字列に変換します。</p>
+     * @param values マップ
+     * @return JSONの文字列
+     */
+    public String encode(final Map<String, Object> values);
+
+    /**
+     * <p>JSONオブジェクトを表す文字列をマップに変換します。</p>
+     * @param json JSONの文字列
+     * @return マップ
+     * @throws BaasdayException JSONの形式が正しくない場合、JSONオブジェクトでない場合
+     */
+    public Map<String, Object> decode(final CharSequence json) throws BaasdayException;
+}
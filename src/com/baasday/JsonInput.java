@@ -0,0 +1,243 @@
+package com.baasday;
+
+import java.nio.CharBuffer;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>baasdayサーバから返されたJSONを先頭から順に読み出すクラスです。</p>
+ * <p>ObjectBindingの実装が、中間のマップを作らずにJSONから直接オブジェクトを作成するために使います。通常はアノテーションプロセッサが生成したクラスから呼び出され、アプリケーションから直接使う必要はありません。</p>
+ * <p>値を読み出すメソッドは、JSONの値がnullの場合にオブジェクトならnull、数値なら0、ブールならfalseを返します。これはBasicObjectのgetIntなどと同じです。値の型が異なる場合はBaasdayExceptionをスローします。</p>
+ * @see ObjectBinding
+ */
+public final class JsonInput {
+    private final JsonReader reader;
+    private String name;
+
+    JsonInput(final JsonReader reader) {
+        this.reader = reader;
+    }
+
+    JsonInput(final CharBuffer json) {
+        this(new JsonReader(json.array(), json.arrayOffset() + json.position(), json.remaining()));
+    }
+
+    static JsonInput fromValues(final Map<String, Object> values) {
+        final JsonWriter writer = new JsonWriter();
+        writer.writeValue(values);
+        final StringBuilder builder = writer.getBuilder();
+        final char[] chars = new char[builder.length()];
+        builder.getChars(0, chars.length, chars, 0);
+        return new JsonInput(new JsonReader(chars, 0, chars.length));
+    }
+
+    void endDocument() throws BaasdayException {
+        this.reader.endDocument();
+    }
+
+    private BaasdayException exceptionForInvalidType(final String typeName) {
+        return new BaasdayException("The value of the field " + this.name + " cannot be coerced to " + typeName);
+    }
+
+    /**
+     * <p>JSONオブジェクトの始まりを読み出します。</p>
+     * @throws BaasdayException 次の値がJSONオブジェクトでない場合
+     */
+    public void beginObject() throws BaasdayException {
+        this.reader.beginObject();
+    }
+
+    /**
+     * <p>JSONオブジェクトの終わりを読み出します。</p>
+     * @throws BaasdayException JSONオブジェクトの終わりでない場合
+     */
+    public void endObject() throws BaasdayException {
+        this.reader.endObject();
+    }
+
+    /**
+     * <p>JSON配列の始まりを読み出します。</p>
+     * @throws BaasdayException 次の値がJSON配列でない場合
+     */
+    public void beginArray() throws BaasdayException {
+        this.reader.beginArray();
+    }
+
+    /**
+     * <p>JSON配列の終わりを読み出します。</p>
+     * @throws BaasdayException JSON配列の終わりでない場合
+     */
+    public void endArray() throws BaasdayException {
+        this.reader.endArray();
+    }
+
+    /**
+     * <p>現在のJSONオブジェクトまたはJSON配列に、まだ読み出していない要素があるかどうかを返します。</p>
+     * @return 要素がある場合はtrue
+     * @throws BaasdayException JSONの形式が正しくない場合
+     */
+    public boolean hasNext() throws BaasdayException {
+        return this.reader.hasNext();
+    }
+
+    /**
+     * <p>JSONオブジェクトのフィールド名を読み出します。</p>
+     * <p>同じフィールド名の文字列は共有されます。</p>
+     * @return フィールド名
+     * @throws BaasdayException 次がフィールド名でない場合
+     */
+    public String nextName() throws BaasdayException {
+        this.name = this.reader.nextName();
+        return this.name;
+    }
+
+    /**
+     * <p>次の値がnullかどうかを返します。値は読み出しません。</p>
+     * @return nullの場合はtrue
+     * @throws BaasdayException JSONの形式が正しくない場合
+     */
+    public boolean peekNull() throws BaasdayException {
+        return this.reader.peek() == JsonReader.NULL;
+    }
+
+    /**
+     * <p>次の値を読み飛ばします。</p>
+     * @throws BaasdayException JSONの形式が正しくない場合
+     */
+    public void skipValue() throws BaasdayException {
+        this.reader.skipValue();
+    }
+
+    /**
+     * <p>次の値を文字列として読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値が文字列でない場合
+     */
+    public String nextString() throws BaasdayException {
+        final int token = this.reader.peek();
+        if (token == JsonReader.NULL) {
+            this.reader.nextNull();
+            return null;
+        }
+        if (token != JsonReader.STRING) throw this.exceptionForInvalidType("a string");
+        return this.reader.nextString();
+    }
+
+    /**
+     * <p>次の値を数値として読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値が数値でない場合
+     */
+    public Number nextNumber() throws BaasdayException {
+        final int token = this.reader.peek();
+        if (token == JsonReader.NULL) {
+            this.reader.nextNull();
+            return null;
+        }
+        if (token != JsonReader.NUMBER) throw this.exceptionForInvalidType("a number");
+        return this.reader.nextNumber();
+    }
+
+    /**
+     * <p>次の値をint値として読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値が数値でない場合
+     */
+    public int nextInt() throws BaasdayException {
+        final Number value = this.nextNumber();
+        return value == null ? 0 : value.intValue();
+    }
+
+    /**
+     * <p>次の値をlong値として読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値が数値でない場合
+     */
+    public long nextLong() throws BaasdayException {
+        final Number value = this.nextNumber();
+        return value == null ? 0 : value.longValue();
+    }
+
+    /**
+     * <p>次の値をdouble値として読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値が数値でない場合
+     */
+    public double nextDouble() throws BaasdayException {
+        final Number value = this.nextNumber();
+        return value == null ? 0 : value.doubleValue();
+    }
+
+    /**
+     * <p>次の値をブールとして読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値がブールでない場合
+     */
+    public Boolean nextBooleanObject() throws BaasdayException {
+        final int token = this.reader.peek();
+        if (token == JsonReader.NULL) {
+            this.reader.nextNull();
+            return null;
+        }
+        if (token != JsonReader.TRUE && token != JsonReader.FALSE) throw this.exceptionForInvalidType("a boolean");
+        return this.reader.nextBoolean();
+    }
+
+    /**
+     * <p>次の値をboolean値として読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値がブールでない場合
+     */
+    public boolean nextBoolean() throws BaasdayException {
+        final Boolean value = this.nextBooleanObject();
+        return value != null && value;
+    }
+
+    /**
+     * <p>次の値を日付として読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値が日付でない場合
+     */
+    public Date nextDate() throws BaasdayException {
+        final Object value = this.nextValue();
+        if (value != null && !(value instanceof Date)) throw this.exceptionForInvalidType("a date");
+        return (Date) value;
+    }
+
+    /**
+     * <p>次の値をマップとして読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値がマップでない場合
+     */
+    public Map<String, Object> nextMap() throws BaasdayException {
+        final Object value = this.nextValue();
+        if (value != null && !(value instanceof Map)) throw this.exceptionForInvalidType("a map");
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> result = (Map<String, Object>) value;
+        return result;
+    }
+
+    /**
+     * <p>次の値をリストとして読み出します。</p>
+     * @return 値
+     * @throws BaasdayException 値がリストでない場合
+     */
+    public List<Object> nextList() throws BaasdayException {
+        final Object value = this.nextValue();
+        if (value != null && !(value instanceof List)) throw this.exceptionForInvalidType("a list");
+        @SuppressWarnings("unchecked")
+        final List<Object> result = (List<Object>) value;
+        return result;
+    }
+
+    /**
+     * <p>次の値を読み出します。</p>
+     * <p>値はBasicObject#getと同じく、Map、List、String、Number、Boolean、Date、nullのいずれかで返されます。</p>
+     * @return 値
+     * @throws BaasdayException JSONの形式が正しくない場合
+     */
+    public Object nextValue() throws BaasdayException {
+        return this.reader.readValue();
+    }
+}
@@ -0,0 +1,158 @@
+package com.baasday;
+
+/**
+ * <p>baasdayサーバに送るJSONを先頭から順に書き出すクラスです。</p>
+ * <p>ObjectBindingの実装が、中間のマップを作らずにオブジェクトから直接JSONを作成するために使います。通常はアノテーションプロセッサが生成したクラスから呼び出され、アプリケーションから直接使う必要はありません。</p>
+ * @see ObjectBinding
+ */
+public final class JsonOutput {
+    private final JsonWriter writer;
+    private final StringBuilder builder;
+    private boolean[] hasElements = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    JsonOutput() {
+        this.writer = new JsonWriter();
+        this.builder = this.writer.getBuilder();
+    }
+
+    private void beforeValue() {
+        if (this.afterName) {
+            this.afterName = false;
+            return;
+        }
+        if (this.depth > 0) {
+            if (this.hasElements[this.depth - 1]) this.builder.append(',');
+            this.hasElements[this.depth - 1] = true;
+        }
+    }
+
+    private void push() {
+        if (this.depth == this.hasElements.length) {
+            final boolean[] grown = new boolean[this.depth * 2];
+            System.arraycopy(this.hasElements, 0, grown, 0, this.depth);
+            this.hasElements = grown;
+        }
+        this.hasElements[this.depth++] = false;
+    }
+
+    /**
+     * <p>JSONオブジェクトの始まりを書き出します。</p>
+     * @return このオブジェクト
+     */
+    public JsonOutput beginObject() {
+        this.beforeValue();
+        this.builder.append('{');
+        this.push();
+        return this;
+    }
+
+    /**
+     * <p>JSONオブジェクトの終わりを書き出します。</p>
+     * @return このオブジェクト
+     */
+    public JsonOutput endObject() {
+        --this.depth;
+        this.builder.append('}');
+        return this;
+    }
+
+    /**
+     * <p>JSON配列の始まりを書き出します。</p>
+     * @return このオブジェクト
+     */
+    public JsonOutput beginArray() {
+        this.beforeValue();
+        this.builder.append('[');
+        this.push();
+        return this;
+    }
+
+    /**
+     * <p>JSON配列の終わりを書き出します。</p>
+     * @return このオブジェクト
+     */
+    public JsonOutput endArray() {
+        --this.depth;
+        this.builder.append(']');
+        return this;
+    }
+
+    /**
+     * <p>JSONオブジェクトのフィールド名を書き出します。続けて値を書き出してください。</p>
+     * @param name フィールド名
+     * @return このオブジェクト
+     */
+    public JsonOutput name(final String name) {
+        this.beforeValue();
+        this.writer.writeString(name);
+        this.builder.append(':');
+        this.afterName = true;
+        return this;
+    }
+
+    /**
+     * <p>文字列の値を書き出します。</p>
+     * @param value 値。nullの場合はnullを書き出します
+     * @return このオブジェクト
+     */
+    public JsonOutput value(final String value) {
+        this.beforeValue();
+        if (value == null) {
+            this.builder.append("null");
+        } else {
+            this.writer.writeString(value);
+        }
+        return this;
+    }
+
+    /**
+     * <p>long値を書き出します。</p>
+     * @param value 値
+     * @return このオブジェクト
+     */
+    public JsonOutput value(final long value) {
+        this.beforeValue();
+        this.builder.append(value);
+        return this;
+    }
+
+    /**
+     * <p>double値を書き出します。</p>
+     * @param value 値。NaNと無限大の場合はnullを書き出します
+     * @return このオブジェクト
+     */
+    public JsonOutput value(final double value) {
+        this.beforeValue();
+        this.writer.writeNumber(value);
+        return this;
+    }
+
+    /**
+     * <p>boolean値を書き出します。</p>
+     * @param value 値
+     * @return このオブジェクト
+     */
+    public JsonOutput value(final boolean value) {
+        this.beforeValue();
+        this.builder.append(value);
+        return this;
+    }
+
+    /**
+     * <p>値を書き出します。</p>
+     * <p>値はMap、List、String、Number、Boolean、Date、BasicObject、nullのいずれかです。</p>
+     * @param value 値
+     * @return このオブジェクト
+     */
+    public JsonOutput value(final Object value) {
+        this.beforeValue();
+        this.writer.writeValue(value);
+        return this;
+    }
+
+    public String toString() {
+        return this.builder.toString();
+    }
+}
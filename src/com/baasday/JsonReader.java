@@ -0,0 +1,435 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class JsonReader {
+    static final int BEGIN_OBJECT = 1;
+    static final int END_OBJECT = 2;
+    static final int BEGIN_ARRAY = 3;
+    static final int END_ARRAY = 4;
+    static final int NAME = 5;
+    static final int STRING = 6;
+    static final int NUMBER = 7;
+    static final int TRUE = 8;
+    static final int FALSE = 9;
+    static final int NULL = 10;
+    static final int END_DOCUMENT = 11;
+
+    private static final int PEEKED_NONE = 0;
+
+    private static final int SCOPE_EMPTY_DOCUMENT = 0;
+    private static final int SCOPE_NONEMPTY_DOCUMENT = 1;
+    private static final int SCOPE_EMPTY_OBJECT = 2;
+    private static final int SCOPE_NONEMPTY_OBJECT = 3;
+    private static final int SCOPE_DANGLING_NAME = 4;
+    private static final int SCOPE_EMPTY_ARRAY = 5;
+    private static final int SCOPE_NONEMPTY_ARRAY = 6;
+
+    private final char[] chars;
+    private int position;
+    private final int limit;
+    private int peeked = PEEKED_NONE;
+    private int[] stack = new int[32];
+    private int depth = 1;
+    private final SymbolTable valueSymbols;
+    private Object[] scratch = new Object[64];
+    private int scratchSize;
+
+    JsonReader(final char[] chars, final int offset, final int length, final boolean internValues) {
+        this.chars = chars;
+        this.position = offset;
+        this.limit = offset + length;
+        this.stack[0] = SCOPE_EMPTY_DOCUMENT;
+        this.valueSymbols = internValues ? SymbolTable.SHORT_VALUES : null;
+    }
+
+    JsonReader(final char[] chars, final int offset, final int length) {
+        this(chars, offset, length, false);
+    }
+
+    private BaasdayException syntaxError(final String message) {
+        return new BaasdayException("Malformed JSON at position " + this.position + ": " + message);
+    }
+
+    private void push(final int scope) {
+        if (this.depth == this.stack.length) {
+            final int[] newStack = new int[this.depth * 2];
+            System.arraycopy(this.stack, 0, newStack, 0, this.depth);
+            this.stack = newStack;
+        }
+        this.stack[this.depth++] = scope;
+    }
+
+    private int nextNonWhitespace() {
+        while (this.position < this.limit) {
+            final char c = this.chars[this.position++];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+        }
+        return -1;
+    }
+
+    int peek() throws BaasdayException {
+        if (this.peeked != PEEKED_NONE) return this.peeked;
+        final int scope = this.stack[this.depth - 1];
+        if (scope == SCOPE_EMPTY_ARRAY) {
+            this.stack[this.depth - 1] = SCOPE_NONEMPTY_ARRAY;
+            final int c = this.nextNonWhitespace();
+            if (c == ']') return this.peeked = END_ARRAY;
+            --this.position;
+        } else if (scope == SCOPE_NONEMPTY_ARRAY) {
+            final int c = this.nextNonWhitespace();
+            if (c == ']') return this.peeked = END_ARRAY;
+            if (c != ',') throw this.syntaxError("expected ',' or ']'");
+        } else if (scope == SCOPE_EMPTY_OBJECT || scope == SCOPE_NONEMPTY_OBJECT) {
+            this.stack[this.depth - 1] = SCOPE_DANGLING_NAME;
+            if (scope == SCOPE_NONEMPTY_OBJECT) {
+                final int c = this.nextNonWhitespace();
+                if (c == '}') return this.peeked = END_OBJECT;
+                if (c != ',') throw this.syntaxError("expected ',' or '}'");
+            }
+            final int c = this.nextNonWhitespace();
+            if (c == '"') return this.peeked = NAME;
+            if (c == '}' && scope == SCOPE_EMPTY_OBJECT) return this.peeked = END_OBJECT;
+            throw this.syntaxError("expected a name");
+        } else if (scope == SCOPE_DANGLING_NAME) {
+            this.stack[this.depth - 1] = SCOPE_NONEMPTY_OBJECT;
+            if (this.nextNonWhitespace() != ':') throw this.syntaxError("expected ':'");
+        } else if (scope == SCOPE_EMPTY_DOCUMENT) {
+            this.stack[this.depth - 1] = SCOPE_NONEMPTY_DOCUMENT;
+        } else {
+            if (this.nextNonWhitespace() == -1) return this.peeked = END_DOCUMENT;
+            throw this.syntaxError("unexpected data after the document");
+        }
+        final int c = this.nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return this.peeked = BEGIN_OBJECT;
+            case '[':
+                return this.peeked = BEGIN_ARRAY;
+            case '"':
+                return this.peeked = STRING;
+            case 't':
+                this.expectLiteral("rue");
+                return this.peeked = TRUE;
+            case 'f':
+                this.expectLiteral("alse");
+                return this.peeked = FALSE;
+            case 'n':
+                this.expectLiteral("ull");
+                return this.peeked = NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    --this.position;
+                    return this.peeked = NUMBER;
+                }
+                throw this.syntaxError(c == -1 ? "unexpected end of input" : "unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void expectLiteral(final String rest) throws BaasdayException {
+        final int length = rest.length();
+        if (this.position + length > this.limit) throw this.syntaxError("unexpected end of input");
+        for (int index = 0; index < length; ++index) {
+            if (this.chars[this.position + index] != rest.charAt(index)) throw this.syntaxError("unknown literal");
+        }
+        this.position += length;
+    }
+
+    private void expect(final int token, final String name) throws BaasdayException {
+        if (this.peek() != token) throw this.syntaxError("expected " + name);
+        this.peeked = PEEKED_NONE;
+    }
+
+    void beginObject() throws BaasdayException {
+        this.expect(BEGIN_OBJECT, "'{'");
+        this.push(SCOPE_EMPTY_OBJECT);
+    }
+
+    void endObject() throws BaasdayException {
+        this.expect(END_OBJECT, "'}'");
+        --this.depth;
+    }
+
+    void beginArray() throws BaasdayException {
+        this.expect(BEGIN_ARRAY, "'['");
+        this.push(SCOPE_EMPTY_ARRAY);
+    }
+
+    void endArray() throws BaasdayException {
+        this.expect(END_ARRAY, "']'");
+        --this.depth;
+    }
+
+    boolean hasNext() throws BaasdayException {
+        final int token = this.peek();
+        return token != END_OBJECT && token != END_ARRAY && token != END_DOCUMENT;
+    }
+
+    String nextName() throws BaasdayException {
+        this.expect(NAME, "a name");
+        return this.readQuoted(SymbolTable.FIELD_NAMES);
+    }
+
+    String nextString() throws BaasdayException {
+        this.expect(STRING, "a string");
+        return this.readQuoted(this.valueSymbols);
+    }
+
+    boolean nextBoolean() throws BaasdayException {
+        final int token = this.peek();
+        if (token != TRUE && token != FALSE) throw this.syntaxError("expected a boolean");
+        this.peeked = PEEKED_NONE;
+        return token == TRUE;
+    }
+
+    void nextNull() throws BaasdayException {
+        this.expect(NULL, "null");
+    }
+
+    Number nextNumber() throws BaasdayException {
+        this.expect(NUMBER, "a number");
+        final int start = this.position;
+        boolean integral = true;
+        if (this.position < this.limit && this.chars[this.position] == '-') ++this.position;
+        while (this.position < this.limit) {
+            final char c = this.chars[this.position];
+            if (c >= '0' && c <= '9') {
+                ++this.position;
+            } else if (c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                integral = false;
+                ++this.position;
+            } else {
+                break;
+            }
+        }
+        final int length = this.position - start;
+        final boolean negative = this.chars[start] == '-';
+        final int digitCount = negative ? length - 1 : length;
+        if (digitCount == 0) throw this.syntaxError("malformed number");
+        if (integral && digitCount <= 18) {
+            long value = 0;
+            for (int index = negative ? start + 1 : start; index < this.position; ++index) value = value * 10 + (this.chars[index] - '0');
+            if (negative) value = -value;
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) return (int) value;
+            return value;
+        }
+        try {
+            final String text = new String(this.chars, start, length);
+            if (integral) {
+                try {
+                    return Long.parseLong(text);
+                } catch (final NumberFormatException exception) {
+                    return Double.parseDouble(text);
+                }
+            }
+            return Double.parseDouble(text);
+        } catch (final NumberFormatException exception) {
+            throw this.syntaxError("malformed number");
+        }
+    }
+
+    private String readQuoted(final SymbolTable symbols) throws BaasdayException {
+        final int start = this.position;
+        while (this.position < this.limit) {
+            final char c = this.chars[this.position];
+            if (c == '"') {
+                final String result = symbols == null ? new String(this.chars, start, this.position - start) : symbols.intern(this.chars, start, this.position - start);
+                ++this.position;
+                return result;
+            }
+            if (c == '\\') break;
+            ++this.position;
+        }
+        final StringBuilder builder = new StringBuilder(this.position - start + 16);
+        builder.append(this.chars, start, this.position - start);
+        while (this.position < this.limit) {
+            final char c = this.chars[this.position++];
+            if (c == '"') return symbols == null ? builder.toString() : symbols.intern(builder.toString());
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if (this.position >= this.limit) break;
+            final char escaped = this.chars[this.position++];
+            switch (escaped) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u': {
+                    if (this.position + 4 > this.limit) throw this.syntaxError("malformed unicode escape");
+                    int value = 0;
+                    for (int index = 0; index < 4; ++index) {
+                        final int digit = Character.digit(this.chars[this.position++], 16);
+                        if (digit < 0) throw this.syntaxError("malformed unicode escape");
+                        value = (value << 4) | digit;
+                    }
+                    builder.append((char) value);
+                    break;
+                }
+                default:
+                    builder.append(escaped);
+                    break;
+            }
+        }
+        throw this.syntaxError("unterminated string");
+    }
+
+    void skipValue() throws BaasdayException {
+        int nesting = 0;
+        do {
+            switch (this.peek()) {
+                case BEGIN_OBJECT:
+                    this.beginObject();
+                    ++nesting;
+                    break;
+                case BEGIN_ARRAY:
+                    this.beginArray();
+                    ++nesting;
+                    break;
+                case END_OBJECT:
+                    this.endObject();
+                    --nesting;
+                    break;
+                case END_ARRAY:
+                    this.endArray();
+                    --nesting;
+                    break;
+                case NAME:
+                case STRING:
+                    this.peeked = PEEKED_NONE;
+                    this.skipQuoted();
+                    break;
+                case NUMBER:
+                    this.nextNumber();
+                    break;
+                case TRUE:
+                case FALSE:
+                case NULL:
+                    this.peeked = PEEKED_NONE;
+                    break;
+                default:
+                    throw this.syntaxError("unexpected end of input");
+            }
+        } while (nesting > 0);
+    }
+
+    private void skipQuoted() throws BaasdayException {
+        while (this.position < this.limit) {
+            final char c = this.chars[this.position++];
+            if (c == '"') return;
+            if (c == '\\') ++this.position;
+        }
+        throw this.syntaxError("unterminated string");
+    }
+
+    private void pushScratch(final Object value) {
+        if (this.scratchSize == this.scratch.length) {
+            final Object[] grown = new Object[this.scratchSize * 2];
+            System.arraycopy(this.scratch, 0, grown, 0, this.scratchSize);
+            this.scratch = grown;
+        }
+        this.scratch[this.scratchSize++] = value;
+    }
+
+    private void popScratch(final int base) {
+        for (int index = base; index < this.scratchSize; ++index) this.scratch[index] = null;
+        this.scratchSize = base;
+    }
+
+    Object readValue() throws BaasdayException {
+        switch (this.peek()) {
+            case BEGIN_OBJECT:
+                return this.readObject();
+            case BEGIN_ARRAY: {
+                this.beginArray();
+                final int base = this.scratchSize;
+                while (this.hasNext()) this.pushScratch(this.readValue());
+                this.endArray();
+                final List<Object> list = new ArrayList<Object>(this.scratchSize - base);
+                for (int index = base; index < this.scratchSize; ++index) list.add(this.scratch[index]);
+                this.popScratch(base);
+                return list;
+            }
+            case STRING:
+                return this.nextString();
+            case NUMBER:
+                return this.nextNumber();
+            case TRUE:
+            case FALSE:
+                return this.nextBoolean();
+            case NULL:
+                this.nextNull();
+                return null;
+            default:
+                throw this.syntaxError("expected a value");
+        }
+    }
+
+    private Object readObject() throws BaasdayException {
+        this.beginObject();
+        final int base = this.scratchSize;
+        while (this.hasNext()) {
+            this.pushScratch(this.nextName());
+            this.pushScratch(this.readValue());
+        }
+        this.endObject();
+        final Map<String, Object> map = new HashMap<String, Object>(Utility.hashMapCapacity((this.scratchSize - base) / 2));
+        for (int index = base; index < this.scratchSize; index += 2) map.put((String) this.scratch[index], this.scratch[index + 1]);
+        this.popScratch(base);
+        if ("datetime".equals(map.get("$type")) && map.containsKey("$value")) {
+            final Object value = map.get("$value");
+            if (!(value instanceof String)) return null;
+            final long time = RFC3339.parse((String) value);
+            return time == RFC3339.INVALID ? null : new Date(time);
+        }
+        return map;
+    }
+
+    void endDocument() throws BaasdayException {
+        if (this.peek() != END_DOCUMENT) throw this.syntaxError("unexpected data after the document");
+    }
+
+    Map<String, Object> readDocumentFields(final Set<String> fields) throws BaasdayException {
+        if (this.peek() != BEGIN_OBJECT) throw new BaasdayException("The API result is not a JSON Object.");
+        this.beginObject();
+        final Map<String, Object> result = new HashMap<String, Object>(Utility.hashMapCapacity(fields.size()));
+        while (this.hasNext()) {
+            final String name = this.nextName();
+            if (fields.contains(name)) {
+                result.put(name, this.readValue());
+            } else {
+                this.skipValue();
+            }
+        }
+        this.endObject();
+        if (this.peek() != END_DOCUMENT) throw this.syntaxError("unexpected data after the document");
+        return result;
+    }
+
+    Map<String, Object> readDocument() throws BaasdayException {
+        if (this.peek() != BEGIN_OBJECT) throw new BaasdayException("The API result is not a JSON Object.");
+        final Object value = this.readObject();
+        if (!(value instanceof Map)) throw new BaasdayException("The API result is not a JSON Object.");
+        if (this.peek() != END_DOCUMENT) throw this.syntaxError("unexpected data after the document");
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> result = (Map<String, Object>) value;
+        return result;
+    }
+}
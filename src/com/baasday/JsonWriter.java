@@ -0,0 +1,141 @@
+package com.baasday;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+final class JsonWriter {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder builder;
+
+    JsonWriter(final StringBuilder builder) {
+        this.builder = builder;
+    }
+
+    JsonWriter() {
+        this(new StringBuilder(256));
+    }
+
+    StringBuilder getBuilder() {
+        return this.builder;
+    }
+
+    void writeString(final String string) {
+        final StringBuilder builder = this.builder;
+        builder.append('"');
+        final int length = string.length();
+        int start = 0;
+        for (int index = 0; index < length; ++index) {
+            final char c = string.charAt(index);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') continue;
+            builder.append(string, start, index);
+            start = index + 1;
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                default:
+                    builder.append("\\u").append(HEX_DIGITS[(c >> 12) & 0xF]).append(HEX_DIGITS[(c >> 8) & 0xF]).append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+                    break;
+            }
+        }
+        builder.append(string, start, length);
+        builder.append('"');
+    }
+
+    void writeNumber(final Number number) {
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            this.builder.append(number.longValue());
+            return;
+        }
+        final double value = number.doubleValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            this.builder.append("null");
+        } else if (value == (long) value && Math.abs(value) < 1e15) {
+            this.builder.append((long) value);
+        } else {
+            this.builder.append(number instanceof Float ? number.toString() : Double.toString(value));
+        }
+    }
+
+    void writeDate(final Date date) {
+        this.builder.append("{\"$type\":\"datetime\",\"$value\":\"");
+        RFC3339.format(date.getTime(), this.builder);
+        this.builder.append("\"}");
+    }
+
+    void writeMap(final Map<?, ?> map) {
+        this.builder.append('{');
+        boolean first = true;
+        for (final Map.Entry<?, ?> entry : map.entrySet()) {
+            if (first) {
+                first = false;
+            } else {
+                this.builder.append(',');
+            }
+            this.writeString(String.valueOf(entry.getKey()));
+            this.builder.append(':');
+            this.writeValue(entry.getValue());
+        }
+        this.builder.append('}');
+    }
+
+    void writeList(final List<?> list) {
+        this.builder.append('[');
+        boolean first = true;
+        for (final Object element : list) {
+            if (first) {
+                first = false;
+            } else {
+                this.builder.append(',');
+            }
+            this.writeValue(element);
+        }
+        this.builder.append(']');
+    }
+
+    void writeValue(final Object value) {
+        if (value == null) {
+            this.builder.append("null");
+        } else if (value instanceof String) {
+            this.writeString((String) value);
+        } else if (value instanceof Number) {
+            this.writeNumber((Number) value);
+        } else if (value instanceof Boolean) {
+            this.builder.append(((Boolean) value).booleanValue());
+        } else if (value instanceof Map) {
+            this.writeMap((Map<?, ?>) value);
+        } else if (value instanceof List) {
+            this.writeList((List<?>) value);
+        } else if (value instanceof Date) {
+            this.writeDate((Date) value);
+        } else if (value instanceof BasicObject) {
+            this.writeMap(((BasicObject) value).getValues());
+        } else {
+            this.writeString(value.toString());
+        }
+    }
+
+    public String toString() {
+        return this.builder.toString();
+    }
+}
@@ -148,6 +148,18 @@ public class LeaderboardEntry extends BaasdayObject implements UpdatableObject,
         return fetchAll(leaderboardName, null);
     }
 
+    /**
+     * <p>指定されたスコアランキング内のエントリーを、スコアの大きい順に送り出すPublisherを返します。</p>
+     * <p>エントリーは要求された分だけ、baasdayサーバから最大100件ずつ取得しながら送り出されます。取得はSubscriptionで要求されるまで行われず、途中で取り消すと以降の取得は行われません。抽出条件の取得開始位置と最大取得件数はすべてのページを通じた範囲として扱われます。</p>
+     * @param leaderboardName スコアランキング名
+     * @param query 抽出条件。取得開始位置と最大取得件数だけが有効です。nullの場合はすべてのエントリー
+     * @return エントリーを送り出すPublisher
+     * @see Item#publishAll(String, Query)
+     */
+    public static Publisher<LeaderboardEntry> publishAll(final String leaderboardName, final Query query) {
+        return new QueryPublisher<LeaderboardEntry>(leaderboardAPIPath(leaderboardName), query, new LeaderboardEntryFactory(leaderboardName));
+    }
+
     /**
      * <p>このエントリーを更新します。baasdayサーバへの反映は即時に反映されます。</p>
      * <p>valuesに含まれるフィールドを対応する値で更新します。</p>
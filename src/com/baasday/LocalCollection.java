@@ -0,0 +1,240 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>コレクション内のアイテムを端末上に複製して保持するクラスです。</p>
+ * <p>保持しているアイテムに対してはLocalQueryと同じ意味で抽出条件を評価できます。フィールドごとにインデックスを追加すると、抽出条件に応じて適切なインデックスが選ばれ、全件を走査せずに結果を返します。</p>
+ * <ul>
+ * <li>ハッシュインデックスは一致とQuery.Filters#inによる抽出に使われます。</li>
+ * <li>ソート済みインデックスは一致、範囲($lt, $lte, $gt, $gte)、Query.Filters#inによる抽出と、そのフィールドひとつだけを指定したソート順に使われます。</li>
+ * </ul>
+ * <p>attachメソッドで登録したコレクションには、Itemクラスを通じて追加、更新、削除したアイテムが自動的に反映されます。</p>
+ * <p>このクラスのメソッドはスレッドセーフです。</p>
+ * @see LocalQuery
+ */
+public class LocalCollection {
+    private static final Map<String, LocalCollection> ATTACHED_COLLECTIONS = new HashMap<String, LocalCollection>();
+
+    private final String collectionName;
+    private final Map<String, Item> items = new LinkedHashMap<String, Item>();
+    private final Map<String, FieldIndex> indexes = new HashMap<String, FieldIndex>();
+    private final Map<String, Long> sequences = new HashMap<String, Long>();
+    private long nextSequence;
+
+    /**
+     * <p>コレクション名を指定してオブジェクトを作成します。</p>
+     * <p>このコンストラクタで作成したオブジェクトはItemクラスの操作を自動的には反映しません。自動的に反映する場合はattachメソッドを利用してください。</p>
+     * @param collectionName コレクション名
+     */
+    public LocalCollection(final String collectionName) {
+        this.collectionName = collectionName;
+    }
+
+    /**
+     * <p>指定されたコレクションの複製を返します。まだ存在しない場合は作成して登録します。</p>
+     * <p>登録された複製には、Itemクラスを通じて追加、更新、削除したアイテムが自動的に反映されます。</p>
+     * @param collectionName コレクション名
+     * @return コレクションの複製
+     */
+    public static LocalCollection attach(final String collectionName) {
+        synchronized (ATTACHED_COLLECTIONS) {
+            LocalCollection collection = ATTACHED_COLLECTIONS.get(collectionName);
+            if (collection == null) {
+                collection = new LocalCollection(collectionName);
+                ATTACHED_COLLECTIONS.put(collectionName, collection);
+            }
+            return collection;
+        }
+    }
+
+    /**
+     * <p>指定されたコレクションの複製の登録を解除します。</p>
+     * @param collectionName コレクション名
+     */
+    public static void detach(final String collectionName) {
+        synchronized (ATTACHED_COLLECTIONS) {
+            ATTACHED_COLLECTIONS.remove(collectionName);
+        }
+    }
+
+    static LocalCollection attached(final String collectionName) {
+        synchronized (ATTACHED_COLLECTIONS) {
+            return ATTACHED_COLLECTIONS.get(collectionName);
+        }
+    }
+
+    static void itemChanged(final Item item) throws BaasdayException {
+        final LocalCollection collection = attached(item.getCollectionName());
+        if (collection != null) collection.put(item);
+    }
+
+    static void itemDeleted(final Item item) throws BaasdayException {
+        final LocalCollection collection = attached(item.getCollectionName());
+        if (collection != null) collection.remove(item.getId());
+    }
+
+    /**
+     * <p>コレクション名を返します。</p>
+     * @return コレクション名
+     */
+    public String getCollectionName() {
+        return this.collectionName;
+    }
+
+    private void addIndex(final FieldIndex index) {
+        for (final Map.Entry<String, Item> entry : this.items.entrySet()) index.add(entry.getKey(), entry.getValue().getValues());
+        this.indexes.put(index.getField(), index);
+    }
+
+    /**
+     * <p>指定されたフィールドにハッシュインデックスを追加します。すでにインデックスがある場合は置き換えます。</p>
+     * @param field フィールド名
+     */
+    public synchronized void addHashIndex(final String field) {
+        this.addIndex(new FieldIndex.Hash(field));
+    }
+
+    /**
+     * <p>指定されたフィールドにソート済みインデックスを追加します。すでにインデックスがある場合は置き換えます。</p>
+     * <p>フィールドの値にリストを持つアイテムがある間は、このインデックスは使われません。</p>
+     * @param field フィールド名
+     */
+    public synchronized void addSortedIndex(final String field) {
+        this.addIndex(new FieldIndex.Sorted(field));
+    }
+
+    /**
+     * <p>指定されたフィールドのインデックスを削除します。</p>
+     * @param field フィールド名
+     */
+    public synchronized void removeIndex(final String field) {
+        this.indexes.remove(field);
+    }
+
+    /**
+     * <p>アイテムを追加します。同じIDを持つアイテムがすでにある場合は置き換えます。</p>
+     * @param item アイテム
+     * @throws BaasdayException アイテムがIDを持たない場合
+     */
+    public synchronized void put(final Item item) throws BaasdayException {
+        final String id = item.getId();
+        if (id == null) throw new BaasdayException("An item without the field \"_id\" cannot be stored in a local collection.");
+        if (this.items.containsKey(id)) {
+            for (final FieldIndex index : this.indexes.values()) index.remove(id);
+        } else {
+            this.sequences.put(id, this.nextSequence++);
+        }
+        this.items.put(id, item);
+        for (final FieldIndex index : this.indexes.values()) index.add(id, item.getValues());
+    }
+
+    /**
+     * <p>複数のアイテムを追加します。</p>
+     * @param items アイテム
+     * @throws BaasdayException アイテムがIDを持たない場合
+     */
+    public synchronized void putAll(final Collection<Item> items) throws BaasdayException {
+        for (final Item item : items) this.put(item);
+    }
+
+    /**
+     * <p>指定されたIDを持つアイテムを削除します。</p>
+     * @param id ID
+     * @return 削除したアイテム。存在しない場合はnull
+     */
+    public synchronized Item remove(final String id) {
+        final Item item = this.items.remove(id);
+        if (item != null) {
+            this.sequences.remove(id);
+            for (final FieldIndex index : this.indexes.values()) index.remove(id);
+        }
+        return item;
+    }
+
+    /**
+     * <p>すべてのアイテムを削除します。インデックスの定義は残ります。</p>
+     */
+    public synchronized void clear() {
+        for (final String id : new ArrayList<String>(this.items.keySet())) this.remove(id);
+    }
+
+    /**
+     * <p>指定されたIDを持つアイテムを返します。</p>
+     * @param id ID
+     * @return アイテム。存在しない場合はnull
+     */
+    public synchronized Item get(final String id) {
+        return this.items.get(id);
+    }
+
+    /**
+     * <p>保持しているアイテムの件数を返します。</p>
+     * @return 件数
+     */
+    public synchronized int size() {
+        return this.items.size();
+    }
+
+    /**
+     * <p>保持しているすべてのアイテムを返します。</p>
+     * @return アイテムのリスト
+     */
+    public synchronized List<Item> getItems() {
+        return new ArrayList<Item>(this.items.values());
+    }
+
+    /**
+     * <p>保持しているアイテムに抽出条件を適用して、その結果を返します。</p>
+     * <p>結果はLocalQuery#executeと同じです。インデックスを使う場合も、ソート順で並びが決まらないアイテムは追加した順に並べられます。</p>
+     * @param query 抽出条件
+     * @return 抽出結果
+     * @throws BaasdayException 抽出条件が正しくない場合
+     * @see LocalQuery#execute(Query, java.util.Collection)
+     */
+    public synchronized ListResult<Item> query(final Query query) throws BaasdayException {
+        final QueryPlanner.Plan plan = QueryPlanner.plan(query, this.indexes);
+        if (plan.isFullScan()) return LocalQuery.execute(query, this.items.values());
+        final Map<String, Object> filter = query.hasFilter() ? query.filter() : null;
+        final List<Item> matched = new ArrayList<Item>();
+        final Map<Item, Long> sequences = new IdentityHashMap<Item, Long>();
+        for (final String id : plan.getCandidateIds()) {
+            final Item item = this.items.get(id);
+            if (item != null && LocalQuery.matches(filter, item)) {
+                matched.add(item);
+                sequences.put(item, this.sequences.get(id));
+            }
+        }
+        final Comparator<Item> insertionOrder = new Comparator<Item>() {
+            public int compare(final Item item1, final Item item2) {
+                return sequences.get(item1).compareTo(sequences.get(item2));
+            }
+        };
+        if (!query.hasOrder()) {
+            Collections.sort(matched, insertionOrder);
+        } else if (plan.isOrdered()) {
+            sortTies(matched, LocalQuery.orderComparator(query.order()), insertionOrder);
+        } else {
+            Collections.sort(matched, insertionOrder);
+            LocalQuery.sort(matched, query.order());
+        }
+        return LocalQuery.page(query, matched.size(), matched);
+    }
+
+    private static void sortTies(final List<Item> matched, final Comparator<BasicObject> order, final Comparator<Item> tieBreaker) {
+        int start = 0;
+        for (int index = 1; index <= matched.size(); ++index) {
+            if (index < matched.size() && order.compare(matched.get(start), matched.get(index)) == 0) continue;
+            if (index - start > 1) Collections.sort(matched.subList(start, index), tieBreaker);
+            start = index;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>抽出条件をbaasdayサーバに問い合わせずに、手元にあるオブジェクトに対して評価するためのユーティリティです。</p>
+ * <p>Query.Filtersで作成できるフィルタ、ソート順、取得開始位置、最大取得件数をサーバと同じ意味で評価します。すでに取得済みのオブジェクトに対する抽出をオフラインでも高速に行えます。</p>
+ * <p>数値は型にかかわらず値で比較され、日付は時刻で比較されます。大小比較は数値同士、文字列同士、日付同士でのみ成立します。リストを値に持つフィールドは、要素のどれかが条件を満たせば条件を満たすものとして扱います。</p>
+ * <p>最大待ち時間は無視されます。</p>
+ * @see Query
+ * @see Query.Filters
+ */
+public final class LocalQuery {
+    private LocalQuery() {
+    }
+
+    static final int MAX_LIMIT = 100;
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_NUMBER = 1;
+    private static final int TYPE_STRING = 2;
+    private static final int TYPE_MAP = 3;
+    private static final int TYPE_LIST = 4;
+    private static final int TYPE_BOOLEAN = 5;
+    private static final int TYPE_DATE = 6;
+
+    private static final Comparator<Object> VALUE_COMPARATOR = new Comparator<Object>() {
+        public int compare(final Object left, final Object right) {
+            return compareValues(left, right);
+        }
+    };
+
+    /**
+     * <p>オブジェクトがフィルタを満たすかどうかを返します。</p>
+     * @param filter フィルタ。nullの場合はすべてのオブジェクトが条件を満たします
+     * @param object オブジェクト
+     * @return フィルタを満たす場合はtrue、満たさない場合はfalse
+     * @throws BaasdayException フィルタが正しくない場合
+     */
+    public static boolean matches(final Map<String, Object> filter, final BasicObject object) throws BaasdayException {
+        return filter == null || matchesFilter(filter, object.getValues());
+    }
+
+    /**
+     * <p>抽出条件をオブジェクトの集まりに対して評価して、その結果を返します。</p>
+     * <p>結果の件数はサーバと同様に、フィルタを満たすオブジェクトの件数で、取得開始位置と最大取得件数の影響は受けません。最大取得件数を指定しない場合や101以上を指定した場合は、最大で100件返します。</p>
+     * @param query 抽出条件。nullの場合はすべてのオブジェクトを対象にします
+     * @param objects 評価対象のオブジェクト
+     * @param <T> オブジェクトのクラス
+     * @return 抽出結果
+     * @throws BaasdayException 抽出条件が正しくない場合
+     */
+    public static <T extends BasicObject> ListResult<T> execute(final Query query, final Collection<T> objects) throws BaasdayException {
+        final Map<String, Object> filter = query != null && query.hasFilter() ? query.filter() : null;
+        final List<T> matched = new ArrayList<T>();
+        for (final T object : objects) {
+            if (matches(filter, object)) matched.add(object);
+        }
+        if (query != null && query.hasOrder()) sort(matched, query.order());
+        return page(query, matched.size(), matched);
+    }
+
+    static <T> ListResult<T> page(final Query query, final int count, final List<T> matched) {
+        final int skip = query != null && query.hasSkip() ? Math.max(query.skip(), 0) : 0;
+        final int limit = query != null && query.hasLimit() ? Math.max(Math.min(query.limit(), MAX_LIMIT), 0) : MAX_LIMIT;
+        final int from = Math.min(skip, matched.size());
+        final int to = Math.min(from + limit, matched.size());
+        return new ListResult<T>(count, new ArrayList<T>(matched.subList(from, to)));
+    }
+
+    static <T extends BasicObject> void sort(final List<T> objects, final List<Query.FieldOrder> order) {
+        Collections.sort(objects, orderComparator(order));
+    }
+
+    static Comparator<BasicObject> orderComparator(final List<Query.FieldOrder> order) {
+        return new Comparator<BasicObject>() {
+            public int compare(final BasicObject left, final BasicObject right) {
+                for (final Query.FieldOrder fieldOrder : order) {
+                    final int result = compareValues(valueAtPath(left.getValues(), fieldOrder.getField()), valueAtPath(right.getValues(), fieldOrder.getField()));
+                    if (result != 0) return fieldOrder.isDescending() ? -result : result;
+                }
+                return 0;
+            }
+        };
+    }
+
+    static Comparator<Object> valueComparator() {
+        return VALUE_COMPARATOR;
+    }
+
+    static Object valueAtPath(final Map<String, Object> values, final String field) {
+        if (values == null) return null;
+        if (field.indexOf('.') < 0) return values.get(field);
+        Object current = values;
+        for (final String component : field.split("\\.")) {
+            if (!(current instanceof Map)) return null;
+            current = ((Map) current).get(component);
+        }
+        return current;
+    }
+
+    static boolean isOperatorMap(final Object value) {
+        if (!(value instanceof Map) || ((Map) value).isEmpty()) return false;
+        for (final Object key : ((Map) value).keySet()) {
+            if (!(key instanceof String) || !((String) key).startsWith("$")) return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asFilter(final Object value) throws BaasdayException {
+        if (!(value instanceof Map)) throw new BaasdayException("A filter must be a map: " + value);
+        return (Map<String, Object>) value;
+    }
+
+    private static List<?> asList(final String operator, final Object value) throws BaasdayException {
+        if (value instanceof List) return (List<?>) value;
+        if (value instanceof Object[]) return Arrays.asList((Object[]) value);
+        throw new BaasdayException("The operand of " + operator + " must be a list.");
+    }
+
+    private static boolean matchesFilter(final Map<String, Object> filter, final Map<String, Object> values) throws BaasdayException {
+        for (final Map.Entry<String, Object> entry : filter.entrySet()) {
+            final String key = entry.getKey();
+            final Object condition = entry.getValue();
+            if (Query.Filters.AND.equals(key)) {
+                for (final Object subfilter : asList(key, condition)) {
+                    if (!matchesFilter(asFilter(subfilter), values)) return false;
+                }
+            } else if (Query.Filters.OR.equals(key)) {
+                boolean any = false;
+                for (final Object subfilter : asList(key, condition)) {
+                    if (matchesFilter(asFilter(subfilter), values)) {
+                        any = true;
+                        break;
+                    }
+                }
+                if (!any) return false;
+            } else if (Query.Filters.NOT.equals(key)) {
+                if (matchesFilter(asFilter(condition), values)) return false;
+            } else if (!matchesField(valueAtPath(values, key), condition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesField(final Object fieldValue, final Object condition) throws BaasdayException {
+        if (!isOperatorMap(condition)) return matchesEqual(fieldValue, condition);
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> operators = (Map<String, Object>) condition;
+        for (final Map.Entry<String, Object> entry : operators.entrySet()) {
+            if (!matchesOperator(fieldValue, entry.getKey(), entry.getValue())) return false;
+        }
+        return true;
+    }
+
+    private static boolean matchesOperator(final Object fieldValue, final String operator, final Object operand) throws BaasdayException {
+        if (Query.Filters.NOT_EQUAL.equals(operator)) {
+            return !matchesEqual(fieldValue, operand);
+        } else if (Query.Filters.IN.equals(operator)) {
+            for (final Object candidate : asList(operator, operand)) {
+                if (matchesEqual(fieldValue, candidate)) return true;
+            }
+            return false;
+        } else if (Query.Filters.NOT.equals(operator)) {
+            return !matchesField(fieldValue, operand);
+        } else if (Query.Filters.LESS_THAN.equals(operator)) {
+            return matchesComparison(fieldValue, operand, -1, false);
+        } else if (Query.Filters.LESS_THAN_OR_EQUAL.equals(operator)) {
+            return matchesComparison(fieldValue, operand, -1, true);
+        } else if (Query.Filters.GREATER_THAN.equals(operator)) {
+            return matchesComparison(fieldValue, operand, 1, false);
+        } else if (Query.Filters.GREATER_THAN_OR_EQUAL.equals(operator)) {
+            return matchesComparison(fieldValue, operand, 1, true);
+        }
+        throw new BaasdayException("Unsupported filter operator: " + operator);
+    }
+
+    private static boolean matchesEqual(final Object fieldValue, final Object expected) {
+        if (valuesEqual(fieldValue, expected)) return true;
+        if (fieldValue instanceof List) {
+            for (final Object element : (List) fieldValue) {
+                if (valuesEqual(element, expected)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesComparison(final Object fieldValue, final Object operand, final int sign, final boolean orEqual) {
+        if (fieldValue instanceof List) {
+            for (final Object element : (List) fieldValue) {
+                if (matchesComparison(element, operand, sign, orEqual)) return true;
+            }
+            return false;
+        }
+        final int type = typeOf(fieldValue);
+        if (type != typeOf(operand) || (type != TYPE_NUMBER && type != TYPE_STRING && type != TYPE_DATE)) return false;
+        final int result = compareValues(fieldValue, operand);
+        return result == 0 ? orEqual : Integer.signum(result) == sign;
+    }
+
+    private static int typeOf(final Object value) {
+        if (value == null) return TYPE_NULL;
+        if (value instanceof Number) return TYPE_NUMBER;
+        if (value instanceof String) return TYPE_STRING;
+        if (value instanceof Map || value instanceof BasicObject) return TYPE_MAP;
+        if (value instanceof List) return TYPE_LIST;
+        if (value instanceof Boolean) return TYPE_BOOLEAN;
+        if (value instanceof Date) return TYPE_DATE;
+        return TYPE_STRING;
+    }
+
+    private static int compareNumbers(final Number left, final Number right) {
+        if (isIntegral(left) && isIntegral(right)) {
+            final long leftValue = left.longValue();
+            final long rightValue = right.longValue();
+            return leftValue < rightValue ? -1 : (leftValue == rightValue ? 0 : 1);
+        }
+        return Double.compare(left.doubleValue(), right.doubleValue());
+    }
+
+    private static boolean isIntegral(final Number number) {
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> mapOf(final Object value) {
+        return value instanceof BasicObject ? ((BasicObject) value).getValues() : (Map<String, Object>) value;
+    }
+
+    private static List<String> sortedKeys(final Map<String, Object> map) {
+        final List<String> keys = new ArrayList<String>(map.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    static boolean valuesEqual(final Object left, final Object right) {
+        return compareValues(left, right) == 0;
+    }
+
+    static int compareValues(final Object left, final Object right) {
+        final int leftType = typeOf(left);
+        final int rightType = typeOf(right);
+        if (leftType != rightType) return leftType < rightType ? -1 : 1;
+        switch (leftType) {
+            case TYPE_NULL:
+                return 0;
+            case TYPE_NUMBER:
+                return compareNumbers((Number) left, (Number) right);
+            case TYPE_STRING:
+                return left.toString().compareTo(right.toString());
+            case TYPE_BOOLEAN:
+                return ((Boolean) left).compareTo((Boolean) right);
+            case TYPE_DATE: {
+                final long leftTime = ((Date) left).getTime();
+                final long rightTime = ((Date) right).getTime();
+                return leftTime < rightTime ? -1 : (leftTime == rightTime ? 0 : 1);
+            }
+            case TYPE_LIST: {
+                final Iterator<?> leftIterator = ((List<?>) left).iterator();
+                final Iterator<?> rightIterator = ((List<?>) right).iterator();
+                while (leftIterator.hasNext() && rightIterator.hasNext()) {
+                    final int result = compareValues(leftIterator.next(), rightIterator.next());
+                    if (result != 0) return result;
+                }
+                return leftIterator.hasNext() ? 1 : (rightIterator.hasNext() ? -1 : 0);
+            }
+            default: {
+                final Map<String, Object> leftMap = mapOf(left);
+                final Map<String, Object> rightMap = mapOf(right);
+                final List<String> leftKeys = sortedKeys(leftMap);
+                final List<String> rightKeys = sortedKeys(rightMap);
+                final int keyCount = Math.min(leftKeys.size(), rightKeys.size());
+                for (int index = 0; index < keyCount; ++index) {
+                    final int result = leftKeys.get(index).compareTo(rightKeys.get(index));
+                    if (result != 0) return result;
+                }
+                if (leftKeys.size() != rightKeys.size()) return leftKeys.size() < rightKeys.size() ? -1 : 1;
+                for (final String key : leftKeys) {
+                    final int result = compareValues(leftMap.get(key), rightMap.get(key));
+                    if (result != 0) return result;
+                }
+                return 0;
+            }
+        }
+    }
+}
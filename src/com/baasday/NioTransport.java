@@ -0,0 +1,679 @@
+package com.baasday;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>ノンブロッキングI/Oを使ってbaasdayサーバと通信するTransportです。</p>
+ * <p>すべての接続をひとつのスレッドのSelectorで扱うため、同時に多数のリクエストやロングポーリングを行っても通信のためのスレッドは増えません。executeAsyncを使うと、呼び出し元のスレッドもレスポンスを待つ間ブロックされません。</p>
+ * <p>ホスト名の解決は数を固定した少数の専用スレッドで行われ、executeAsyncの呼び出し元や通信用のスレッドをブロックしません。同時に多数のリクエストを行っても解決のためのスレッドは増えません。</p>
+ * <p>HTTP/1.1のhttp URLだけに対応します。https URLへのリクエストはIOExceptionになります。接続はリクエストごとに作成され、レスポンスを受信し終えると閉じられます。</p>
+ * <p>使い終わったらcloseを呼び出して通信用のスレッドを終了してください。</p>
+ * @see Transport
+ * @see Baasday#setTransport(Transport)
+ */
+public final class NioTransport implements Transport {
+    private static final int DEFAULT_TIMEOUT_MILLIS = 30 * 1000;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+    private static final int MAX_BUFFERED_BODY_SIZE = 256 * 1024;
+    private static final int RESOLVER_THREADS = 2;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ExecutorService resolver;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private volatile int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile boolean closed;
+    private volatile boolean terminated;
+
+    /**
+     * <p>オブジェクトを作成し、通信用のスレッドを開始します。</p>
+     * @throws IOException Selectorを作成できない場合
+     */
+    public NioTransport() throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                NioTransport.this.loop();
+            }
+        }, "baasday-nio-" + THREAD_COUNT.incrementAndGet());
+        this.thread.setDaemon(true);
+        final String resolverName = this.thread.getName() + "-resolver-";
+        final AtomicInteger resolverCount = new AtomicInteger();
+        this.resolver = Executors.newFixedThreadPool(RESOLVER_THREADS, new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, resolverName + resolverCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.thread.start();
+    }
+
+    /**
+     * <p>通信が途絶えたときにリクエストを失敗させるまでの時間を設定します。初期値は30秒です。</p>
+     * <p>ロングポーリングを行う場合はサーバが応答を保留する時間より長くしてください。</p>
+     * @param timeoutMillis ミリ秒
+     */
+    public void setTimeoutMillis(final int timeoutMillis) {
+        if (timeoutMillis < 1) throw new IllegalArgumentException("timeoutMillis must be positive.");
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Transport.Response execute(final Transport.Request request) throws IOException {
+        final Exchange exchange = this.start(request, false);
+        try {
+            if (!exchange.headersReceived.await(this.timeoutMillis, TimeUnit.MILLISECONDS) && exchange.response == null) {
+                exchange.abort();
+                throw new SocketTimeoutException("Timed out waiting for the response from " + request.getUrl());
+            }
+        } catch (final InterruptedException exception) {
+            exchange.abort();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (exchange.response != null) return exchange.response;
+        throw exchange.failure;
+    }
+
+    /**
+     * <p>リクエストを送り、呼び出し元のスレッドをブロックせずにすぐに戻ります。</p>
+     * <p>返されるFutureは、レスポンスのボディをすべて受信した時点で完了します。通信に失敗した場合、Future#getはIOExceptionを原因とするExecutionExceptionをスローします。</p>
+     * @param request リクエスト
+     * @return レスポンスを返すFuture
+     * @throws IOException リクエストを開始できない場合
+     */
+    public Future<Transport.Response> executeAsync(final Transport.Request request) throws IOException {
+        return this.start(request, true).completion;
+    }
+
+    /**
+     * <p>通信用のスレッドを終了し、処理中のリクエストをすべて失敗させます。</p>
+     */
+    public void close() {
+        this.closed = true;
+        this.resolver.shutdown();
+        this.selector.wakeup();
+    }
+
+    private Exchange start(final Transport.Request request, final boolean bufferBody) throws IOException {
+        if (this.closed) throw new IOException("The transport is closed.");
+        final URL url = request.getUrl();
+        if (!"http".equalsIgnoreCase(url.getProtocol())) throw new IOException("NioTransport supports only http URLs: " + url);
+        final int port = url.getPort() < 0 ? url.getDefaultPort() : url.getPort();
+        final Exchange exchange = new Exchange(request, encodeRequest(request, port), bufferBody);
+        try {
+            this.resolver.execute(new Runnable() {
+                public void run() {
+                    NioTransport.this.connect(exchange, url.getHost(), port);
+                }
+            });
+        } catch (final RuntimeException exception) {
+            throw new IOException("The transport is closed.");
+        }
+        return exchange;
+    }
+
+    private void connect(final Exchange exchange, final String host, final int port) {
+        SocketChannel channel = null;
+        IOException failure = null;
+        try {
+            final InetSocketAddress address = new InetSocketAddress(host, port);
+            if (address.isUnresolved()) throw new IOException("Failed to resolve the host " + host);
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(address);
+        } catch (final IOException exception) {
+            failure = exception;
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (final IOException ignored) {
+                }
+                channel = null;
+            }
+        }
+        final SocketChannel connectingChannel = channel;
+        final IOException connectFailure = failure;
+        this.runOnSelector(new Runnable() {
+            public void run() {
+                if (connectFailure != null) {
+                    exchange.fail(connectFailure);
+                } else {
+                    exchange.register(connectingChannel);
+                }
+            }
+        });
+    }
+
+    private void runOnSelector(final Runnable task) {
+        this.tasks.add(task);
+        if (this.terminated) {
+            this.runPendingTasks();
+        } else {
+            this.selector.wakeup();
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) task.run();
+    }
+
+    private static void checkHeaderText(final String text, final String description) throws IOException {
+        for (int index = 0; index < text.length(); ++index) {
+            final char c = text.charAt(index);
+            if (c == '\r' || c == '\n' || c == 0) throw new IOException("The " + description + " must not contain CR, LF or NUL: " + text);
+        }
+    }
+
+    private static ByteBuffer encodeRequest(final Transport.Request request, final int port) throws IOException {
+        final URL url = request.getUrl();
+        final StringBuilder head = new StringBuilder(256);
+        final String path = url.getPath().length() == 0 ? "/" : url.getPath();
+        checkHeaderText(request.getMethod(), "request method");
+        checkHeaderText(url.getFile(), "request path");
+        checkHeaderText(url.getHost(), "host name");
+        head.append(request.getMethod()).append(' ').append(path);
+        if (url.getQuery() != null) head.append('?').append(url.getQuery());
+        head.append(" HTTP/1.1\r\nHost: ").append(url.getHost());
+        if (port != url.getDefaultPort()) head.append(':').append(port);
+        head.append("\r\nConnection: close\r\n");
+        for (final Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            final String name = header.getKey();
+            final String value = header.getValue() == null ? "" : header.getValue();
+            checkHeaderText(name, "header name");
+            checkHeaderText(value, "value of the header " + name);
+            if (name.length() == 0 || name.indexOf(':') >= 0 || name.indexOf(' ') >= 0 || name.indexOf('\t') >= 0) throw new IOException("Invalid header name: " + name);
+            head.append(name).append(": ").append(value).append("\r\n");
+        }
+        final byte[] body = request.getBody();
+        if (body != null) head.append("Content-Length: ").append(body.length).append("\r\n");
+        head.append("\r\n");
+        final byte[] headBytes = head.toString().getBytes(Utility.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.allocate(headBytes.length + (body == null ? 0 : body.length));
+        buffer.put(headBytes);
+        if (body != null) buffer.put(body);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void loop() {
+        long lastTimeoutCheck = System.currentTimeMillis();
+        try {
+            while (!this.closed) {
+                this.selector.select(1000);
+                Runnable task;
+                while ((task = this.tasks.poll()) != null) task.run();
+                for (final SelectionKey key : this.selector.selectedKeys()) {
+                    final Exchange exchange = (Exchange) key.attachment();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isConnectable()) exchange.finishConnect();
+                        if (key.isValid() && key.isWritable()) exchange.write();
+                        if (key.isValid() && key.isReadable()) exchange.read();
+                    } catch (final IOException exception) {
+                        exchange.fail(exception);
+                    }
+                }
+                this.selector.selectedKeys().clear();
+                final long now = System.currentTimeMillis();
+                if (now - lastTimeoutCheck >= 1000) {
+                    lastTimeoutCheck = now;
+                    for (final SelectionKey key : this.selector.keys()) {
+                        final Exchange exchange = (Exchange) key.attachment();
+                        if (exchange != null && !exchange.paused && now - exchange.lastActivity > this.timeoutMillis) {
+                            exchange.fail(new SocketTimeoutException("No data received from " + exchange.request.getUrl() + " for " + this.timeoutMillis + "ms"));
+                        }
+                    }
+                }
+            }
+        } catch (final IOException ignored) {
+        } finally {
+            this.closed = true;
+            this.resolver.shutdown();
+            final IOException closedException = new IOException("The transport is closed.");
+            this.runPendingTasks();
+            for (final SelectionKey key : this.selector.keys()) {
+                final Exchange exchange = (Exchange) key.attachment();
+                if (exchange != null) exchange.fail(closedException);
+            }
+            try {
+                this.selector.close();
+            } catch (final IOException ignored) {
+            }
+            this.terminated = true;
+            this.runPendingTasks();
+        }
+    }
+
+    private static final class ExchangeResponse implements Transport.Response {
+        private final int statusCode;
+        private final Map<String, String> headers;
+        private final int contentLength;
+        private final BodyStream body;
+
+        ExchangeResponse(final int statusCode, final Map<String, String> headers, final int contentLength, final BodyStream body) {
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.contentLength = contentLength;
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return this.statusCode;
+        }
+
+        public String getHeader(final String name) {
+            return this.headers.get(name.toLowerCase(Locale.US));
+        }
+
+        public int getContentLength() {
+            return this.contentLength;
+        }
+
+        public InputStream getBody() {
+            return this.body;
+        }
+
+        public void close() {
+            this.body.close();
+        }
+    }
+
+    private final class BodyStream extends InputStream {
+        private final Exchange exchange;
+        private final LinkedList<byte[]> chunks = new LinkedList<byte[]>();
+        private int bufferedSize;
+        private int position;
+        private boolean finished;
+        private boolean closed;
+        private IOException failure;
+
+        BodyStream(final Exchange exchange) {
+            this.exchange = exchange;
+        }
+
+        synchronized boolean append(final byte[] bytes, final int offset, final int length) {
+            if (this.closed) return true;
+            final byte[] chunk = new byte[length];
+            System.arraycopy(bytes, offset, chunk, 0, length);
+            this.chunks.add(chunk);
+            this.bufferedSize += length;
+            this.notifyAll();
+            return this.exchange.bufferBody || this.bufferedSize < MAX_BUFFERED_BODY_SIZE;
+        }
+
+        synchronized void finish(final IOException failure) {
+            if (this.finished) return;
+            this.finished = true;
+            this.failure = failure;
+            this.notifyAll();
+        }
+
+        public synchronized int read() throws IOException {
+            final byte[] single = new byte[1];
+            final int count = this.read(single, 0, 1);
+            return count < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        public synchronized int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            if (length == 0) return 0;
+            final long deadline = System.currentTimeMillis() + NioTransport.this.timeoutMillis;
+            while (this.chunks.isEmpty()) {
+                if (this.closed) throw new IOException("The response is closed.");
+                if (this.finished) {
+                    if (this.failure != null) throw this.failure;
+                    return -1;
+                }
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) throw new SocketTimeoutException("Timed out reading the response body.");
+                try {
+                    this.wait(remaining);
+                } catch (final InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            final byte[] chunk = this.chunks.getFirst();
+            final int count = Math.min(length, chunk.length - this.position);
+            System.arraycopy(chunk, this.position, buffer, offset, count);
+            this.position += count;
+            if (this.position == chunk.length) {
+                this.chunks.removeFirst();
+                this.position = 0;
+            }
+            final boolean wasFull = this.bufferedSize >= MAX_BUFFERED_BODY_SIZE;
+            this.bufferedSize -= count;
+            if (wasFull && this.bufferedSize < MAX_BUFFERED_BODY_SIZE && !this.finished) {
+                NioTransport.this.runOnSelector(new Runnable() {
+                    public void run() {
+                        BodyStream.this.exchange.resumeReading();
+                    }
+                });
+            }
+            return count;
+        }
+
+        public synchronized int available() {
+            return this.bufferedSize;
+        }
+
+        public void close() {
+            final boolean abort;
+            synchronized (this) {
+                if (this.closed) return;
+                this.closed = true;
+                abort = !this.finished;
+                this.chunks.clear();
+                this.bufferedSize = 0;
+                this.notifyAll();
+            }
+            if (abort) this.exchange.abort();
+        }
+    }
+
+    private static final int STATE_HEAD = 0;
+    private static final int STATE_FIXED_BODY = 1;
+    private static final int STATE_UNTIL_CLOSE_BODY = 2;
+    private static final int STATE_CHUNK_SIZE = 3;
+    private static final int STATE_CHUNK_DATA = 4;
+    private static final int STATE_CHUNK_DATA_END = 5;
+    private static final int STATE_TRAILERS = 6;
+    private static final int STATE_DONE = 7;
+
+    private final class Exchange {
+        final Transport.Request request;
+        final ByteBuffer requestBuffer;
+        final boolean bufferBody;
+        final CountDownLatch headersReceived = new CountDownLatch(1);
+        final FutureTask<Transport.Response> completion = new FutureTask<Transport.Response>(new Callable<Transport.Response>() {
+            public Transport.Response call() throws IOException {
+                if (Exchange.this.failure != null) throw Exchange.this.failure;
+                return Exchange.this.response;
+            }
+        });
+        SocketChannel channel;
+        SelectionKey key;
+        volatile ExchangeResponse response;
+        volatile IOException failure;
+        long lastActivity = System.currentTimeMillis();
+        private int state = STATE_HEAD;
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private int statusCode;
+        private final Map<String, String> headers = new HashMap<String, String>();
+        private final List<String> headLines = new ArrayList<String>();
+        private int headSize;
+        private long remaining;
+        private BodyStream body;
+        boolean paused;
+
+        Exchange(final Transport.Request request, final ByteBuffer requestBuffer, final boolean bufferBody) {
+            this.request = request;
+            this.requestBuffer = requestBuffer;
+            this.bufferBody = bufferBody;
+        }
+
+        void register(final SocketChannel channel) {
+            this.channel = channel;
+            if (this.state == STATE_DONE) {
+                this.closeChannel();
+                return;
+            }
+            try {
+                if (NioTransport.this.closed) throw new IOException("The transport is closed.");
+                this.key = this.channel.register(NioTransport.this.selector, SelectionKey.OP_CONNECT, this);
+                this.lastActivity = System.currentTimeMillis();
+            } catch (final IOException exception) {
+                this.fail(exception);
+            }
+        }
+
+        void finishConnect() throws IOException {
+            if (this.channel.finishConnect()) {
+                this.lastActivity = System.currentTimeMillis();
+                this.key.interestOps(SelectionKey.OP_WRITE);
+            }
+        }
+
+        void write() throws IOException {
+            if (this.channel.write(this.requestBuffer) > 0) this.lastActivity = System.currentTimeMillis();
+            if (!this.requestBuffer.hasRemaining()) this.key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void read() throws IOException {
+            final ByteBuffer buffer = NioTransport.this.readBuffer;
+            buffer.clear();
+            final int count = this.channel.read(buffer);
+            if (count < 0) {
+                this.endOfStream();
+                return;
+            }
+            if (count == 0) return;
+            this.lastActivity = System.currentTimeMillis();
+            this.consume(buffer.array(), 0, count);
+        }
+
+        void resumeReading() {
+            if (!this.paused || this.key == null || !this.key.isValid()) return;
+            this.paused = false;
+            this.lastActivity = System.currentTimeMillis();
+            this.key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void abort() {
+            NioTransport.this.runOnSelector(new Runnable() {
+                public void run() {
+                    Exchange.this.fail(new IOException("The request was aborted."));
+                }
+            });
+        }
+
+        private void closeChannel() {
+            if (this.key != null) this.key.cancel();
+            if (this.channel == null) return;
+            try {
+                this.channel.close();
+            } catch (final IOException ignored) {
+            }
+        }
+
+        void fail(final IOException exception) {
+            if (this.state == STATE_DONE) return;
+            this.state = STATE_DONE;
+            this.closeChannel();
+            this.failure = exception;
+            if (this.body != null) this.body.finish(exception);
+            this.headersReceived.countDown();
+            this.completion.run();
+        }
+
+        private void complete() {
+            this.state = STATE_DONE;
+            this.closeChannel();
+            this.body.finish(null);
+            this.headersReceived.countDown();
+            this.completion.run();
+        }
+
+        private void endOfStream() throws IOException {
+            if (this.state == STATE_UNTIL_CLOSE_BODY) {
+                this.complete();
+            } else if (this.state != STATE_DONE) {
+                throw new IOException("The connection was closed before the response was complete.");
+            }
+        }
+
+        private void appendBody(final byte[] bytes, final int offset, final int length) {
+            if (length > 0 && !this.body.append(bytes, offset, length) && !this.paused) {
+                this.paused = true;
+                this.key.interestOps(0);
+            }
+        }
+
+        private boolean appendLineByte(final byte b) throws IOException {
+            if (b == '\n') {
+                if (this.lineLength > 0 && this.line[this.lineLength - 1] == '\r') --this.lineLength;
+                return true;
+            }
+            if (this.lineLength == this.line.length) {
+                if (this.line.length >= MAX_HEAD_SIZE) throw new IOException("A response header line is too long.");
+                final byte[] grown = new byte[this.line.length * 2];
+                System.arraycopy(this.line, 0, grown, 0, this.lineLength);
+                this.line = grown;
+            }
+            this.line[this.lineLength++] = b;
+            return false;
+        }
+
+        private String takeLine() {
+            final String result = new String(this.line, 0, this.lineLength, Utility.UTF_8);
+            this.lineLength = 0;
+            return result;
+        }
+
+        private void consume(final byte[] bytes, final int offset, final int length) throws IOException {
+            int index = offset;
+            final int end = offset + length;
+            while (index < end && this.state != STATE_DONE) {
+                switch (this.state) {
+                    case STATE_HEAD:
+                        if (++this.headSize > MAX_HEAD_SIZE) throw new IOException("The response header is too large.");
+                        if (this.appendLineByte(bytes[index++])) {
+                            final String headLine = this.takeLine();
+                            if (headLine.length() == 0) {
+                                this.endOfHead();
+                            } else {
+                                this.headLines.add(headLine);
+                            }
+                        }
+                        break;
+                    case STATE_FIXED_BODY: {
+                        final int count = (int) Math.min(this.remaining, end - index);
+                        this.appendBody(bytes, index, count);
+                        index += count;
+                        this.remaining -= count;
+                        if (this.remaining == 0) this.complete();
+                        break;
+                    }
+                    case STATE_UNTIL_CLOSE_BODY:
+                        this.appendBody(bytes, index, end - index);
+                        index = end;
+                        break;
+                    case STATE_CHUNK_SIZE:
+                        if (this.appendLineByte(bytes[index++])) {
+                            String sizeLine = this.takeLine();
+                            final int extension = sizeLine.indexOf(';');
+                            if (extension >= 0) sizeLine = sizeLine.substring(0, extension);
+                            try {
+                                this.remaining = Long.parseLong(sizeLine.trim(), 16);
+                            } catch (final NumberFormatException exception) {
+                                throw new IOException("Invalid chunk size: " + sizeLine);
+                            }
+                            if (this.remaining < 0) throw new IOException("Invalid chunk size: " + sizeLine);
+                            this.state = this.remaining == 0 ? STATE_TRAILERS : STATE_CHUNK_DATA;
+                        }
+                        break;
+                    case STATE_CHUNK_DATA: {
+                        final int count = (int) Math.min(this.remaining, end - index);
+                        this.appendBody(bytes, index, count);
+                        index += count;
+                        this.remaining -= count;
+                        if (this.remaining == 0) this.state = STATE_CHUNK_DATA_END;
+                        break;
+                    }
+                    case STATE_CHUNK_DATA_END:
+                        if (this.appendLineByte(bytes[index++])) {
+                            this.takeLine();
+                            this.state = STATE_CHUNK_SIZE;
+                        }
+                        break;
+                    case STATE_TRAILERS:
+                        if (this.appendLineByte(bytes[index++]) && this.takeLine().length() == 0) this.complete();
+                        break;
+                    default:
+                        index = end;
+                        break;
+                }
+            }
+        }
+
+        private void endOfHead() throws IOException {
+            if (this.headLines.isEmpty()) return;
+            final String statusLine = this.headLines.get(0);
+            final String[] statusParts = statusLine.split(" ", 3);
+            if (statusParts.length < 2 || !statusParts[0].startsWith("HTTP/")) throw new IOException("Invalid response status line: " + statusLine);
+            try {
+                this.statusCode = Integer.parseInt(statusParts[1]);
+            } catch (final NumberFormatException exception) {
+                throw new IOException("Invalid response status line: " + statusLine);
+            }
+            if (this.statusCode >= 100 && this.statusCode < 200) {
+                this.headLines.clear();
+                this.headSize = 0;
+                return;
+            }
+            for (int index = 1; index < this.headLines.size(); ++index) {
+                final String headerLine = this.headLines.get(index);
+                final int colon = headerLine.indexOf(':');
+                if (colon <= 0) continue;
+                final String name = headerLine.substring(0, colon).trim().toLowerCase(Locale.US);
+                final String value = headerLine.substring(colon + 1).trim();
+                final String previous = this.headers.get(name);
+                this.headers.put(name, previous == null ? value : previous + ", " + value);
+            }
+            int contentLength = -1;
+            final String transferEncoding = this.headers.get("transfer-encoding");
+            final String contentLengthHeader = this.headers.get("content-length");
+            if ("HEAD".equals(this.request.getMethod()) || this.statusCode == 204 || this.statusCode == 304) {
+                contentLength = 0;
+                this.state = STATE_DONE;
+            } else if (transferEncoding != null && transferEncoding.toLowerCase(Locale.US).contains("chunked")) {
+                this.state = STATE_CHUNK_SIZE;
+            } else if (contentLengthHeader != null) {
+                try {
+                    this.remaining = Long.parseLong(contentLengthHeader);
+                } catch (final NumberFormatException exception) {
+                    throw new IOException("Invalid Content-Length: " + contentLengthHeader);
+                }
+                if (this.remaining < 0) throw new IOException("Invalid Content-Length: " + contentLengthHeader);
+                contentLength = this.remaining <= Integer.MAX_VALUE ? (int) this.remaining : -1;
+                this.state = this.remaining == 0 ? STATE_DONE : STATE_FIXED_BODY;
+            } else {
+                this.state = STATE_UNTIL_CLOSE_BODY;
+            }
+            this.body = new BodyStream(this);
+            this.response = new ExchangeResponse(this.statusCode, this.headers, contentLength, this.body);
+            if (!this.bufferBody) this.headersReceived.countDown();
+            if (this.state == STATE_DONE) this.complete();
+        }
+    }
+}
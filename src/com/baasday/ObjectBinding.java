@@ -0,0 +1,40 @@
+package com.baasday;
+
+/**
+ * <p>アプリケーションのクラスのオブジェクトとJSONとの間の変換を表すインターフェースです。</p>
+ * <p>BaasdayCollectionアノテーションを付けたクラスに対して、アノテーションプロセッサ(com.baasday.processor.BaasdayProcessor)がクラス名の後ろにBindingを付けた名前の実装を生成します。生成された実装はリフレクションを使わず、JSONから直接フィールドに値を読み込み、フィールドから直接JSONを書き出します。実装はTypedCollectionに渡して使います。</p>
+ * <p>実装は複数のスレッドから同時に呼び出されても安全でなければなりません。</p>
+ * @param <T> 変換するオブジェクトの型
+ * @see BaasdayCollection
+ * @see TypedCollection
+ */
+public interface ObjectBinding<T> {
+    /**
+     * <p>オブジェクトを保存するコレクション名を返します。</p>
+     * @return コレクション名
+     */
+    public String getCollectionName();
+
+    /**
+     * <p>オブジェクトのIDを返します。</p>
+     * @param object オブジェクト
+     * @return ID。IDを保持しない場合やまだ保存されていない場合はnull
+     */
+    public String getId(final T object);
+
+    /**
+     * <p>JSONオブジェクトを読み出してオブジェクトを作成します。</p>
+     * @param input 読み出すJSON。次の値がJSONオブジェクトの位置にあります
+     * @return 作成したオブジェクト
+     * @throws BaasdayException JSONの形式が正しくない場合、値の型がフィールドの型と合わない場合
+     */
+    public T read(final JsonInput input) throws BaasdayException;
+
+    /**
+     * <p>オブジェクトをJSONオブジェクトとして書き出します。</p>
+     * <p>"_"で始まる名前のフィールドはbaasdayサーバが管理するので書き出しません。</p>
+     * @param object オブジェクト
+     * @param output 書き出し先
+     */
+    public void write(final T object, final JsonOutput output);
+}
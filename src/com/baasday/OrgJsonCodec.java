@@ -0,0 +1,118 @@
+package com.baasday;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>org.jsonパッケージを使うJSONの変換処理です。</p>
+ * <p>以前のバージョンと同じ方法で変換します。他のJSONライブラリのアダプタを作成するときの例にもなります。</p>
+ * @see JsonCodec
+ */
+public final class OrgJsonCodec implements JsonCodec {
+    /**
+     * <p>オブジェクトを作成します。</p>
+     */
+    public OrgJsonCodec() {
+    }
+
+    private static Object fixObjectForJSON(final Object object) {
+        if (object == null) {
+            return JSONObject.NULL;
+        } else if (object instanceof Map) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> map = (Map<String, Object>) object;
+            final JSONObject result = new JSONObject();
+            for (final Map.Entry<String, Object> entry : map.entrySet()) {
+                try {
+                    result.put(entry.getKey(), fixObjectForJSON(entry.getValue()));
+                } catch (final JSONException exception) {}
+            }
+            return result;
+        } else if (object instanceof List) {
+            final List<Object> fixed = new ArrayList<Object>(((List) object).size());
+            for (final Object value : (List) object) {
+                fixed.add(fixObjectForJSON(value));
+            }
+            return new JSONArray(fixed);
+        } else if (object instanceof BasicObject) {
+            return fixObjectForJSON(((BasicObject) object).getValues());
+        } else if (object instanceof Date) {
+            final JSONObject result = new JSONObject();
+            try {
+                result.put("$type", "datetime");
+                result.put("$value", RFC3339.format(((Date) object).getTime()));
+            } catch (final JSONException exception) {}
+            return result;
+        } else {
+            return object;
+        }
+    }
+
+    public String encode(final Map<String, Object> values) {
+        return fixObjectForJSON(values).toString();
+    }
+
+    private static Object fixObjectInJSON(final Object object) throws BaasdayException {
+        if (object == null || JSONObject.NULL.equals(object)) {
+            return null;
+        } else if (object instanceof JSONObject) {
+            final JSONObject jsonObject = (JSONObject) object;
+            try {
+                if (jsonObject.has("$type") && "datetime".equals(jsonObject.get("$type")) && jsonObject.has("$value")) {
+                    final Object value = jsonObject.get("$value");
+                    if (value == null || !(value instanceof String)) return null;
+                    final long time = RFC3339.parse((String) value);
+                    if (time == RFC3339.INVALID) return null;
+                    return new Date(time);
+                }
+            } catch (final JSONException exception) {
+                throw new BaasdayException(exception);
+            }
+            final Map<String, Object> result = new HashMap<String, Object>(Utility.hashMapCapacity(jsonObject.length()));
+            final Iterator<?> keysIterator = jsonObject.keys();
+            while (keysIterator.hasNext()) {
+                final String key = SymbolTable.FIELD_NAMES.intern(keysIterator.next().toString());
+                try {
+                    result.put(key, fixObjectInJSON(jsonObject.get(key)));
+                } catch (final JSONException exception) {
+                    throw new BaasdayException(exception);
+                }
+            }
+            return result;
+        } else if (object instanceof JSONArray) {
+            final JSONArray jsonArray = (JSONArray) object;
+            final int length = jsonArray.length();
+            final List<Object> result = new ArrayList<Object>(length);
+            for (int index = 0; index < length; ++index) {
+                try {
+                    result.add(fixObjectInJSON(jsonArray.get(index)));
+                } catch (final JSONException exception) {
+                    throw new BaasdayException(exception);
+                }
+            }
+            return result;
+        } else {
+            return object;
+        }
+    }
+
+    public Map<String, Object> decode(final CharSequence json) throws BaasdayException {
+        try {
+            final Object fixed = fixObjectInJSON(new JSONObject(json.toString()));
+            if (!(fixed instanceof Map)) throw new BaasdayException("The API result is not a JSON Object: " + json);
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> result = (Map<String, Object>) fixed;
+            return result;
+        } catch (final JSONException exception) {
+            throw new BaasdayException(exception);
+        }
+    }
+}
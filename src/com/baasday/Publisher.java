@@ -0,0 +1,17 @@
+package com.baasday;
+
+/**
+ * <p>要素を要求された分だけ順に送り出すオブジェクトを表すインターフェースです。</p>
+ * <p>Reactive Streamsのorg.reactivestreams.Publisherと同じ規約に従うので、簡単なアダプタで他のリアクティブライブラリと組み合わせられます。</p>
+ * @param <T> 要素の型
+ * @see Subscriber
+ * @see Subscription
+ */
+public interface Publisher<T> {
+    /**
+     * <p>要素の受け取りを開始します。</p>
+     * <p>subscriberのonSubscribeが呼び出され、Subscription#requestで要求した件数まで要素が送られます。</p>
+     * @param subscriber 要素を受け取るオブジェクト
+     */
+    public void subscribe(final Subscriber<? super T> subscriber);
+}
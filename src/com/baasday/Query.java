@@ -1,7 +1,7 @@
 package com.baasday;
 
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -465,7 +465,7 @@ public class Query {
         return this.waitSeconds != null;
     }
 
-    private static String orderString(final List<FieldOrder> fieldOrders) {
+    static String orderString(final List<FieldOrder> fieldOrders) {
         final StringBuilder stringBuilder = new StringBuilder();
         boolean first = true;
         for (final FieldOrder fieldOrder : fieldOrders) {
@@ -480,8 +480,44 @@ public class Query {
         return stringBuilder.toString();
     }
 
+    /**
+     * <p>この抽出条件をコンパイルして、変更できない抽出条件を返します。</p>
+     * <p>コンパイルされた抽出条件はリクエストパラメータの文字列をあらかじめ計算して保持しているため、同じ抽出条件で何度も取得する場合に毎回のエンコードが不要になります。また、安定したハッシュ値を持つのでキャッシュのキーやリクエストの重複排除に利用できます。</p>
+     * <p>コンパイル後にこのオブジェクトを変更しても、コンパイルされた抽出条件には影響しません。</p>
+     * @return コンパイルされた抽出条件
+     * @see CompiledQuery
+     */
+    public CompiledQuery compile() {
+        return new CompiledQuery(this);
+    }
+
+    Query copy() {
+        final Query copy = new Query();
+        copy.filter = this.filter;
+        copy.order = this.order;
+        copy.skip = this.skip;
+        copy.limit = this.limit;
+        copy.waitSeconds = this.waitSeconds;
+        return copy;
+    }
+
+    static String queryString(final Map<String, Object> parameters) {
+        final StringBuilder builder = new StringBuilder();
+        for (final Map.Entry<String, Object> entry : parameters.entrySet()) {
+            if (builder.length() > 0) builder.append("&");
+            builder.append(Utility.urlEncode(entry.getKey()));
+            builder.append("=");
+            builder.append(Utility.urlEncode(entry.getValue().toString()));
+        }
+        return builder.toString();
+    }
+
+    String toQueryString() {
+        return queryString(this.toRequestParameters());
+    }
+
     Map<String, Object> toRequestParameters() {
-        final Map<String, Object> requestParameters = new HashMap<String, Object>();
+        final Map<String, Object> requestParameters = new LinkedHashMap<String, Object>();
         if (this.hasFilter()) requestParameters.put("filter", Utility.jsonString(this.filter()));
         if (this.hasOrder()) requestParameters.put("order", orderString(this.order()));
         if (this.hasSkip()) requestParameters.put("skip", this.skip());
@@ -0,0 +1,148 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class QueryPlanner {
+    private QueryPlanner() {
+    }
+
+    static final class Plan {
+        private final Collection<String> candidateIds;
+        private final boolean ordered;
+
+        Plan(final Collection<String> candidateIds, final boolean ordered) {
+            this.candidateIds = candidateIds;
+            this.ordered = ordered;
+        }
+
+        boolean isFullScan() {
+            return this.candidateIds == null;
+        }
+
+        Collection<String> getCandidateIds() {
+            return this.candidateIds;
+        }
+
+        boolean isOrdered() {
+            return this.ordered;
+        }
+    }
+
+    private static final Plan FULL_SCAN = new Plan(null, false);
+
+    private static final class FieldCondition {
+        final String field;
+        final Object condition;
+
+        FieldCondition(final String field, final Object condition) {
+            this.field = field;
+            this.condition = condition;
+        }
+    }
+
+    private static void collectConjunctiveConditions(final Map<String, Object> filter, final List<FieldCondition> conditions) {
+        for (final Map.Entry<String, Object> entry : filter.entrySet()) {
+            final String key = entry.getKey();
+            if (Query.Filters.AND.equals(key)) {
+                if (!(entry.getValue() instanceof List)) continue;
+                for (final Object subfilter : (List) entry.getValue()) {
+                    if (!(subfilter instanceof Map)) continue;
+                    @SuppressWarnings("unchecked")
+                    final Map<String, Object> map = (Map<String, Object>) subfilter;
+                    collectConjunctiveConditions(map, conditions);
+                }
+            } else if (!key.startsWith("$")) {
+                conditions.add(new FieldCondition(key, entry.getValue()));
+            }
+        }
+    }
+
+    private static boolean isRangeOperand(final Object value) {
+        return value instanceof Number || value instanceof String || value instanceof Date;
+    }
+
+    private static boolean isUsable(final FieldIndex index) {
+        return !index.isSorted() || !((FieldIndex.Sorted) index).hasListValues();
+    }
+
+    private static Set<String> union(final Collection<Set<String>> sets) {
+        final Set<String> result = new LinkedHashSet<String>();
+        for (final Set<String> ids : sets) result.addAll(ids);
+        return result;
+    }
+
+    private static Collection<String> candidatesFor(final FieldIndex index, final Object condition, final boolean descending) {
+        if (!LocalQuery.isOperatorMap(condition)) {
+            return FieldIndex.isIndexableKey(condition) ? index.lookup(condition) : null;
+        }
+        final Map<?, ?> operators = (Map<?, ?>) condition;
+        final Object in = operators.get(Query.Filters.IN);
+        if (in instanceof List) {
+            final List<Set<String>> sets = new ArrayList<Set<String>>();
+            for (final Object value : (List) in) {
+                if (!FieldIndex.isIndexableKey(value)) return null;
+                sets.add(index.lookup(value));
+            }
+            return union(sets);
+        }
+        if (!index.isSorted()) return null;
+        Object lower = null;
+        boolean lowerInclusive = false;
+        Object upper = null;
+        boolean upperInclusive = false;
+        for (final Map.Entry<?, ?> entry : operators.entrySet()) {
+            final Object operator = entry.getKey();
+            final Object operand = entry.getValue();
+            if (!isRangeOperand(operand)) continue;
+            final boolean isLower = Query.Filters.GREATER_THAN.equals(operator) || Query.Filters.GREATER_THAN_OR_EQUAL.equals(operator);
+            final boolean isUpper = Query.Filters.LESS_THAN.equals(operator) || Query.Filters.LESS_THAN_OR_EQUAL.equals(operator);
+            final boolean inclusive = Query.Filters.GREATER_THAN_OR_EQUAL.equals(operator) || Query.Filters.LESS_THAN_OR_EQUAL.equals(operator);
+            if (isLower && (lower == null || LocalQuery.compareValues(operand, lower) > 0)) {
+                lower = operand;
+                lowerInclusive = inclusive;
+            } else if (isUpper && (upper == null || LocalQuery.compareValues(operand, upper) < 0)) {
+                upper = operand;
+                upperInclusive = inclusive;
+            }
+        }
+        if (lower == null && upper == null) return null;
+        return union(((FieldIndex.Sorted) index).range(lower, lowerInclusive, upper, upperInclusive, descending));
+    }
+
+    static Plan plan(final Query query, final Map<String, FieldIndex> indexes) {
+        if (query == null || indexes.isEmpty()) return FULL_SCAN;
+        final List<Query.FieldOrder> order = query.hasOrder() ? query.order() : null;
+        final Query.FieldOrder singleOrder = order != null && order.size() == 1 ? order.get(0) : null;
+        Collection<String> best = null;
+        boolean bestOrdered = false;
+        if (query.hasFilter()) {
+            final List<FieldCondition> conditions = new ArrayList<FieldCondition>();
+            collectConjunctiveConditions(query.filter(), conditions);
+            for (final FieldCondition condition : conditions) {
+                final FieldIndex index = indexes.get(condition.field);
+                if (index == null || !isUsable(index)) continue;
+                final boolean followsOrder = singleOrder != null && index.isSorted() && singleOrder.getField().equals(condition.field);
+                final Collection<String> candidates = candidatesFor(index, condition.condition, followsOrder && singleOrder.isDescending());
+                if (candidates == null) continue;
+                if (best == null || candidates.size() < best.size()) {
+                    best = candidates;
+                    bestOrdered = followsOrder && LocalQuery.isOperatorMap(condition.condition) && !((Map) condition.condition).containsKey(Query.Filters.IN);
+                }
+            }
+        }
+        if (best != null) return new Plan(best, bestOrdered || order == null);
+        if (singleOrder != null) {
+            final FieldIndex index = indexes.get(singleOrder.getField());
+            if (index != null && index.isSorted() && isUsable(index)) {
+                return new Plan(union(((FieldIndex.Sorted) index).range(null, false, null, false, singleOrder.isDescending())), true);
+            }
+        }
+        return FULL_SCAN;
+    }
+}
@@ -0,0 +1,152 @@
+package com.baasday;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class QueryPublisher<T> implements Publisher<T> {
+    private final String path;
+    private final Query query;
+    private final APIClient.BaasdayObjectFactory<T> factory;
+
+    QueryPublisher(final String path, final Query query, final APIClient.BaasdayObjectFactory<T> factory) {
+        this.path = path;
+        this.query = query == null ? new Query() : query.copy();
+        this.factory = factory;
+    }
+
+    public void subscribe(final Subscriber<? super T> subscriber) {
+        if (subscriber == null) throw new NullPointerException("subscriber must not be null.");
+        subscriber.onSubscribe(new QuerySubscription<T>(this.path, this.query, this.factory, subscriber));
+    }
+
+    private static final class QuerySubscription<T> implements Subscription, Runnable {
+        private final String path;
+        private final Query query;
+        private final APIClient.BaasdayObjectFactory<T> factory;
+        private final Subscriber<? super T> subscriber;
+        private final RequestPriority priority = RequestScheduler.getCurrentPriority();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger workInProgress = new AtomicInteger();
+        private final AtomicBoolean rejected = new AtomicBoolean();
+        private final LinkedList<T> buffer = new LinkedList<T>();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private boolean done;
+        private boolean exhausted;
+        private int nextSkip;
+        private int remaining;
+
+        QuerySubscription(final String path, final Query query, final APIClient.BaasdayObjectFactory<T> factory, final Subscriber<? super T> subscriber) {
+            this.path = path;
+            this.query = query;
+            this.factory = factory;
+            this.subscriber = subscriber;
+            this.nextSkip = query.hasSkip() ? query.skip() : 0;
+            this.remaining = query.hasLimit() ? query.limit() : Integer.MAX_VALUE;
+        }
+
+        public void request(final long count) {
+            if (count <= 0) {
+                this.invalidRequest = new IllegalArgumentException("The number of requested elements must be positive: " + count);
+            } else {
+                while (true) {
+                    final long current = this.demand.get();
+                    final long next = current + count < 0 ? Long.MAX_VALUE : current + count;
+                    if (this.demand.compareAndSet(current, next)) break;
+                }
+            }
+            this.schedule();
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+            this.schedule();
+        }
+
+        private void schedule() {
+            if (this.workInProgress.getAndIncrement() != 0) return;
+            try {
+                BackgroundExecutor.get().execute(this);
+            } catch (final RejectedExecutionException exception) {
+                final boolean wasCancelled = this.cancelled;
+                this.cancelled = true;
+                this.workInProgress.set(0);
+                if (!wasCancelled && this.rejected.compareAndSet(false, true)) this.subscriber.onError(exception);
+            }
+        }
+
+        public void run() {
+            final RequestPriority previousPriority = RequestScheduler.setCurrentPriority(this.priority);
+            try {
+                int missed = 1;
+                do {
+                    try {
+                        this.drain();
+                    } catch (final RuntimeException exception) {
+                        this.done = true;
+                        this.cancelled = true;
+                        this.buffer.clear();
+                    }
+                    missed = this.workInProgress.addAndGet(-missed);
+                } while (missed != 0);
+            } finally {
+                RequestScheduler.setCurrentPriority(previousPriority);
+            }
+        }
+
+        private void fetchPage() throws BaasdayException {
+            final int pageSize = Math.min(LocalQuery.MAX_LIMIT, this.remaining);
+            if (pageSize <= 0) {
+                this.exhausted = true;
+                return;
+            }
+            final Query pageQuery = this.query.copy().unsetWait().skip(this.nextSkip).limit(pageSize);
+            final List<T> contents = APIClient.fetchAll(this.path, pageQuery, this.factory).getContents();
+            this.buffer.addAll(contents);
+            this.nextSkip += contents.size();
+            this.remaining -= contents.size();
+            if (contents.size() < pageSize || this.remaining <= 0) this.exhausted = true;
+        }
+
+        private void drain() {
+            while (true) {
+                if (this.done) return;
+                if (this.cancelled) {
+                    this.done = true;
+                    this.buffer.clear();
+                    return;
+                }
+                if (this.invalidRequest != null) {
+                    this.done = true;
+                    this.buffer.clear();
+                    this.subscriber.onError(this.invalidRequest);
+                    return;
+                }
+                if (this.buffer.isEmpty()) {
+                    if (this.exhausted) {
+                        this.done = true;
+                        this.subscriber.onComplete();
+                        return;
+                    }
+                    if (this.demand.get() == 0) return;
+                    try {
+                        this.fetchPage();
+                    } catch (final Exception exception) {
+                        this.done = true;
+                        this.buffer.clear();
+                        this.subscriber.onError(exception);
+                        return;
+                    }
+                    continue;
+                }
+                if (this.demand.get() == 0) return;
+                if (this.demand.get() != Long.MAX_VALUE) this.demand.decrementAndGet();
+                this.subscriber.onNext(this.buffer.removeFirst());
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.baasday;
+
+final class RFC3339 {
+    private RFC3339() {
+    }
+
+    static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60L * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60L * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24L * MILLIS_PER_HOUR;
+    private static final int FORMATTED_LENGTH = 24;
+    private static final long MIN_FORMATTABLE_MILLIS = -62167219200000L;
+    private static final long MAX_FORMATTABLE_MILLIS = 253402300799999L;
+
+    static long daysFromCivil(final int year, final int month, final int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final long era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = (int) (y - era * 400);
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static void putDigits(final char[] chars, final int offset, int value, final int width) {
+        for (int index = offset + width - 1; index >= offset; --index) {
+            chars[index] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static int daysInMonth(final int year, final int month) {
+        if (month == 2) return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    static int format(final long time, final char[] chars, final int offset) {
+        final long millis = Math.max(MIN_FORMATTABLE_MILLIS, Math.min(time, MAX_FORMATTABLE_MILLIS));
+        final long days = millis >= 0 ? millis / MILLIS_PER_DAY : -((-millis + MILLIS_PER_DAY - 1) / MILLIS_PER_DAY);
+        final long millisOfDay = millis - days * MILLIS_PER_DAY;
+        final long shiftedDays = days + 719468;
+        final long era = (shiftedDays >= 0 ? shiftedDays : shiftedDays - 146096) / 146097;
+        final int dayOfEra = (int) (shiftedDays - era * 146097);
+        final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        putDigits(chars, offset, (int) year, 4);
+        chars[offset + 4] = '-';
+        putDigits(chars, offset + 5, month, 2);
+        chars[offset + 7] = '-';
+        putDigits(chars, offset + 8, day, 2);
+        chars[offset + 10] = 'T';
+        putDigits(chars, offset + 11, (int) (millisOfDay / MILLIS_PER_HOUR), 2);
+        chars[offset + 13] = ':';
+        putDigits(chars, offset + 14, (int) (millisOfDay / MILLIS_PER_MINUTE % 60), 2);
+        chars[offset + 16] = ':';
+        putDigits(chars, offset + 17, (int) (millisOfDay / MILLIS_PER_SECOND % 60), 2);
+        chars[offset + 19] = '.';
+        putDigits(chars, offset + 20, (int) (millisOfDay % MILLIS_PER_SECOND), 3);
+        chars[offset + 23] = 'Z';
+        return FORMATTED_LENGTH;
+    }
+
+    static String format(final long millis) {
+        final char[] chars = new char[FORMATTED_LENGTH];
+        format(millis, chars, 0);
+        return new String(chars);
+    }
+
+    static void format(final long millis, final StringBuilder builder) {
+        final char[] chars = new char[FORMATTED_LENGTH];
+        format(millis, chars, 0);
+        builder.append(chars);
+    }
+
+    private static int charAt(final Object source, final int index) {
+        return source instanceof byte[] ? ((byte[]) source)[index] & 0xFF : ((CharSequence) source).charAt(index);
+    }
+
+    private static int digits(final Object source, final int offset, final int count) {
+        int value = 0;
+        for (int index = offset; index < offset + count; ++index) {
+            final int digit = charAt(source, index) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static long parse(final Object source, final int start, final int end) {
+        if (end - start < 10) return INVALID;
+        final int year = digits(source, start, 4);
+        final int month = digits(source, start + 5, 2);
+        final int day = digits(source, start + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) return INVALID;
+        if (charAt(source, start + 4) != '-' || charAt(source, start + 7) != '-') return INVALID;
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+        int position = start + 10;
+        if (position == end) return millis;
+        final int separator = charAt(source, position);
+        if (separator != 'T' && separator != 't' && separator != ' ') return INVALID;
+        if (end - position < 9) return INVALID;
+        final int hour = digits(source, position + 1, 2);
+        final int minute = digits(source, position + 4, 2);
+        final int second = digits(source, position + 7, 2);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) return INVALID;
+        if (charAt(source, position + 3) != ':' || charAt(source, position + 6) != ':') return INVALID;
+        millis += hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + Math.min(second, 59) * MILLIS_PER_SECOND;
+        position += 9;
+        if (position < end && charAt(source, position) == '.') {
+            ++position;
+            int fraction = 0;
+            int scale = 100;
+            final int fractionStart = position;
+            while (position < end) {
+                final int digit = charAt(source, position) - '0';
+                if (digit < 0 || digit > 9) break;
+                fraction += digit * scale;
+                scale /= 10;
+                ++position;
+            }
+            if (position == fractionStart) return INVALID;
+            millis += fraction;
+        }
+        if (position >= end) return millis;
+        final int zone = charAt(source, position);
+        if (zone == 'Z' || zone == 'z') return position + 1 == end ? millis : INVALID;
+        if ((zone != '+' && zone != '-') || end - position != 6 || charAt(source, position + 3) != ':') return INVALID;
+        final int offsetHour = digits(source, position + 1, 2);
+        final int offsetMinute = digits(source, position + 4, 2);
+        if (offsetHour < 0 || offsetMinute < 0) return INVALID;
+        final long offset = offsetHour * MILLIS_PER_HOUR + offsetMinute * MILLIS_PER_MINUTE;
+        return zone == '+' ? millis - offset : millis + offset;
+    }
+
+    static long parse(final CharSequence chars, final int start, final int end) {
+        return parse((Object) chars, start, end);
+    }
+
+    static long parse(final CharSequence chars) {
+        return parse((Object) chars, 0, chars.length());
+    }
+
+    static long parse(final byte[] bytes, final int start, final int end) {
+        return parse((Object) bytes, start, end);
+    }
+}
@@ -0,0 +1,23 @@
+package com.baasday;
+
+/**
+ * <p>baasdayサーバへのリクエストの優先度です。</p>
+ * <p>優先度の高いリクエストは、待機している優先度の低いリクエストより先に送られます。</p>
+ * @see RequestScheduler
+ */
+public enum RequestPriority {
+    /**
+     * <p>ユーザが結果を待っているリクエストです。最も優先して送られます。</p>
+     */
+    INTERACTIVE,
+
+    /**
+     * <p>通常のリクエストです。優先度を指定しない場合はこの優先度になります。</p>
+     */
+    NORMAL,
+
+    /**
+     * <p>同期やプリフェッチなど、バックグラウンドで行うリクエストです。他のリクエストが待機していないときに送られます。</p>
+     */
+    BACKGROUND
+}
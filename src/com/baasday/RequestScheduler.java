@@ -0,0 +1,252 @@
+package com.baasday;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * <p>baasdayサーバへのリクエストの送信順と同時実行数を制御するクラスです。</p>
+ * <p>すべてのリクエストは送信の前にこのクラスで順番を待ちます。リクエストの優先度はスレッドごとにsetCurrentPriorityで設定し、待機しているリクエストは優先度の高いものから順に送られます。優先度ごとの同時実行数と、全体の同時実行数に上限を設定できます。</p>
+ * <p>待ち時間(Query#waitSeconds)を指定したリクエストはサーバで長時間保留されるため、同時実行数の上限の対象になりません。このようなリクエストが他のリクエストの送信を妨げることはありません。</p>
+ * <p>また、APIのパスごとに、一秒あたりのリクエスト数の上限をトークンバケット方式で設定できます。</p>
+ * <pre>
+ * final RequestPriority previous = RequestScheduler.setCurrentPriority(RequestPriority.INTERACTIVE);
+ * try {
+ *     item = Item.fetch("news", id);
+ * } finally {
+ *     RequestScheduler.setCurrentPriority(previous);
+ * }
+ * </pre>
+ * @see RequestPriority
+ */
+public final class RequestScheduler {
+    private RequestScheduler() {
+    }
+
+    private static final class Waiter {
+        final int priority;
+        final long sequence;
+
+        Waiter(final int priority, final long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefilledAt;
+
+        TokenBucket(final double requestsPerSecond, final int burst) {
+            this.tokensPerNano = requestsPerSecond / 1e9;
+            this.capacity = burst;
+            this.tokens = burst;
+            this.lastRefilledAt = System.nanoTime();
+        }
+
+        void take() throws InterruptedException {
+            while (true) {
+                final long waitNanos;
+                synchronized (this) {
+                    final long now = System.nanoTime();
+                    this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefilledAt) * this.tokensPerNano);
+                    this.lastRefilledAt = now;
+                    if (this.tokens >= 1) {
+                        this.tokens -= 1;
+                        return;
+                    }
+                    waitNanos = (long) Math.ceil((1 - this.tokens) / this.tokensPerNano);
+                }
+                Thread.sleep(waitNanos / 1000000, (int) (waitNanos % 1000000));
+            }
+        }
+    }
+
+    static final class Ticket {
+        final int priority;
+
+        Ticket(final int priority) {
+            this.priority = priority;
+        }
+    }
+
+    private static final Ticket UNLIMITED_TICKET = new Ticket(-1);
+
+    private static final int PRIORITY_COUNT = RequestPriority.values().length;
+
+    private static final Object LOCK = new Object();
+    private static final TreeSet<Waiter> WAITERS = new TreeSet<Waiter>(new Comparator<Waiter>() {
+        public int compare(final Waiter left, final Waiter right) {
+            if (left.priority != right.priority) return left.priority < right.priority ? -1 : 1;
+            return left.sequence < right.sequence ? -1 : (left.sequence == right.sequence ? 0 : 1);
+        }
+    });
+    private static final int[] concurrencyLimits = {6, 4, 2};
+    private static final int[] activeCounts = new int[PRIORITY_COUNT];
+    private static final int[] queueDepths = new int[PRIORITY_COUNT];
+    private static int maxConcurrency = 6;
+    private static int totalActiveCount;
+    private static long nextSequence;
+
+    private static final Map<String, TokenBucket> RATE_LIMITS = new HashMap<String, TokenBucket>();
+
+    private static final ThreadLocal<RequestPriority> CURRENT_PRIORITY = new ThreadLocal<RequestPriority>() {
+        protected RequestPriority initialValue() {
+            return RequestPriority.NORMAL;
+        }
+    };
+
+    /**
+     * <p>現在のスレッドから送るリクエストの優先度を設定します。</p>
+     * @param priority 優先度。nullの場合はNORMAL
+     * @return それまで設定されていた優先度
+     */
+    public static RequestPriority setCurrentPriority(final RequestPriority priority) {
+        final RequestPriority previous = CURRENT_PRIORITY.get();
+        CURRENT_PRIORITY.set(priority == null ? RequestPriority.NORMAL : priority);
+        return previous;
+    }
+
+    /**
+     * <p>現在のスレッドから送るリクエストの優先度を返します。</p>
+     * @return 優先度
+     */
+    public static RequestPriority getCurrentPriority() {
+        return CURRENT_PRIORITY.get();
+    }
+
+    /**
+     * <p>全体の同時実行数の上限を設定します。初期値は6です。</p>
+     * @param limit 同時実行数の上限
+     */
+    public static void setMaxConcurrency(final int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive.");
+        synchronized (LOCK) {
+            maxConcurrency = limit;
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * <p>指定された優先度のリクエストの同時実行数の上限を設定します。</p>
+     * <p>初期値はINTERACTIVEが6、NORMALが4、BACKGROUNDが2です。</p>
+     * @param priority 優先度
+     * @param limit 同時実行数の上限
+     */
+    public static void setConcurrencyLimit(final RequestPriority priority, final int limit) {
+        if (limit < 1) throw new IllegalArgumentException("limit must be positive.");
+        synchronized (LOCK) {
+            concurrencyLimits[priority.ordinal()] = limit;
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * <p>指定された優先度で送信を待っているリクエストの数を返します。</p>
+     * @param priority 優先度
+     * @return 待機しているリクエストの数
+     */
+    public static int getQueueDepth(final RequestPriority priority) {
+        synchronized (LOCK) {
+            return queueDepths[priority.ordinal()];
+        }
+    }
+
+    /**
+     * <p>指定された優先度で実行中のリクエストの数を返します。</p>
+     * @param priority 優先度
+     * @return 実行中のリクエストの数
+     */
+    public static int getActiveCount(final RequestPriority priority) {
+        synchronized (LOCK) {
+            return activeCounts[priority.ordinal()];
+        }
+    }
+
+    /**
+     * <p>指定されたパスで始まるAPIへのリクエスト数の上限を設定します。</p>
+     * <p>パスは"items/news"のようにAPIのURLからの相対パスで指定します。複数の設定に当てはまる場合は最も長いパスの設定が使われます。</p>
+     * @param pathPrefix パス
+     * @param requestsPerSecond 一秒あたりのリクエスト数
+     * @param burst 連続して送れるリクエスト数
+     */
+    public static void setRateLimit(final String pathPrefix, final double requestsPerSecond, final int burst) {
+        if (requestsPerSecond <= 0 || burst < 1) throw new IllegalArgumentException("requestsPerSecond and burst must be positive.");
+        synchronized (RATE_LIMITS) {
+            RATE_LIMITS.put(pathPrefix, new TokenBucket(requestsPerSecond, burst));
+        }
+    }
+
+    /**
+     * <p>指定されたパスに設定したリクエスト数の上限を取り除きます。</p>
+     * @param pathPrefix パス
+     */
+    public static void removeRateLimit(final String pathPrefix) {
+        synchronized (RATE_LIMITS) {
+            RATE_LIMITS.remove(pathPrefix);
+        }
+    }
+
+    private static TokenBucket rateLimitFor(final String path) {
+        synchronized (RATE_LIMITS) {
+            if (RATE_LIMITS.isEmpty()) return null;
+            TokenBucket bucket = null;
+            int matchedLength = -1;
+            for (final Map.Entry<String, TokenBucket> entry : RATE_LIMITS.entrySet()) {
+                final String prefix = entry.getKey();
+                if (prefix.length() > matchedLength && path.startsWith(prefix)) {
+                    bucket = entry.getValue();
+                    matchedLength = prefix.length();
+                }
+            }
+            return bucket;
+        }
+    }
+
+    private static boolean isNextToRun(final Waiter waiter) {
+        if (totalActiveCount >= maxConcurrency) return false;
+        for (final Waiter candidate : WAITERS) {
+            if (activeCounts[candidate.priority] < concurrencyLimits[candidate.priority]) return candidate == waiter;
+        }
+        return false;
+    }
+
+    static Ticket acquire(final String path, final boolean longPoll) throws BaasdayException {
+        final int priority = getCurrentPriority().ordinal();
+        try {
+            final TokenBucket bucket = rateLimitFor(path);
+            if (bucket != null) bucket.take();
+            if (longPoll) return UNLIMITED_TICKET;
+            synchronized (LOCK) {
+                final Waiter waiter = new Waiter(priority, nextSequence++);
+                WAITERS.add(waiter);
+                ++queueDepths[priority];
+                try {
+                    while (!isNextToRun(waiter)) LOCK.wait();
+                } finally {
+                    WAITERS.remove(waiter);
+                    --queueDepths[priority];
+                    LOCK.notifyAll();
+                }
+                ++activeCounts[priority];
+                ++totalActiveCount;
+            }
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new BaasdayException(exception);
+        }
+        return new Ticket(priority);
+    }
+
+    static void release(final Ticket ticket) {
+        if (ticket == UNLIMITED_TICKET) return;
+        synchronized (LOCK) {
+            --activeCounts[ticket.priority];
+            --totalActiveCount;
+            LOCK.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * <p>頻繁に増減される数値を、複数のアイテム(シャード)に分散して保持するカウンタです。</p>
+ * <p>ひとつのアイテムのフィールドを多くのクライアントが同時にUpdateOperations#incrementで増やすと、baasdayサーバ上ではそのアイテムへの更新が順番に処理されるため待ち時間が長くなります。このクラスは増減をシャードのいずれかに振り分けるので、シャードの数だけ更新を並行して処理できます。</p>
+ * <p>シャードは指定されたコレクション内のアイテムで、"counter"フィールドにカウンタ名、"shard"フィールドにシャードの番号、"value"フィールドに値を持ちます。シャードは最初に増減するときに作成されます。複数のクライアントが同じシャードを同時に作成して重複しても、合計の値は正しく求められます。</p>
+ * <p>値を読み出すと、すべてのシャードをまとめて読み出して合計し、その結果を短い時間(初期値は1秒)保持します。</p>
+ * <p>シャードの数はあとから増やせます。減らした場合も、使われなくなったシャードの値は合計に含まれます。</p>
+ * <p>このクラスのメソッドはスレッドセーフです。</p>
+ */
+public class ShardedCounter {
+    private static final String COUNTER_FIELD = "counter";
+    private static final String SHARD_FIELD = "shard";
+    private static final String VALUE_FIELD = "value";
+    private static final int MAX_SHARD_COUNT = LocalQuery.MAX_LIMIT;
+    private static final Random RANDOM = new Random();
+
+    private final String collectionName;
+    private final String counterName;
+    private final int shardCount;
+    private final Map<Integer, Item> shards = new HashMap<Integer, Item>();
+    private final Map<Integer, FutureTask<Item>> creatingShards = new HashMap<Integer, FutureTask<Item>>();
+    private final Object loadLock = new Object();
+    private boolean shardsLoaded;
+    private long cacheMillis = 1000;
+    private long cachedTotal;
+    private long cachedAt;
+    private boolean hasCachedTotal;
+
+    /**
+     * <p>コレクション名、カウンタ名、シャードの数を指定してオブジェクトを作成します。</p>
+     * @param collectionName シャードを保存するコレクション名
+     * @param counterName カウンタ名。同じコレクションに複数のカウンタを保存する場合はそれぞれ異なる名前にしてください
+     * @param shardCount シャードの数。1から100まで指定できます
+     */
+    public ShardedCounter(final String collectionName, final String counterName, final int shardCount) {
+        if (shardCount < 1 || shardCount > MAX_SHARD_COUNT) throw new IllegalArgumentException("shardCount must be between 1 and " + MAX_SHARD_COUNT + ": " + shardCount);
+        this.collectionName = collectionName;
+        this.counterName = counterName;
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * <p>コレクション名とカウンタ名を指定してオブジェクトを作成します。シャードの数は10です。</p>
+     * @param collectionName シャードを保存するコレクション名
+     * @param counterName カウンタ名
+     */
+    public ShardedCounter(final String collectionName, final String counterName) {
+        this(collectionName, counterName, 10);
+    }
+
+    /**
+     * <p>シャードを保存するコレクション名を返します。</p>
+     * @return コレクション名
+     */
+    public String getCollectionName() {
+        return this.collectionName;
+    }
+
+    /**
+     * <p>カウンタ名を返します。</p>
+     * @return カウンタ名
+     */
+    public String getCounterName() {
+        return this.counterName;
+    }
+
+    /**
+     * <p>シャードの数を返します。</p>
+     * @return シャードの数
+     */
+    public int getShardCount() {
+        return this.shardCount;
+    }
+
+    /**
+     * <p>読み出した合計の値を保持する時間を設定します。</p>
+     * @param cacheMillis 保持する時間(ミリ秒)。0の場合は読み出すたびにbaasdayサーバから取得します
+     */
+    public synchronized void setCacheMillis(final long cacheMillis) {
+        this.cacheMillis = Math.max(0, cacheMillis);
+    }
+
+    /**
+     * <p>ランダムに選んだシャードの値を増やします。</p>
+     * @param amount 増やす量。負の値を指定すると減らします
+     * @throws BaasdayException 更新に失敗した場合
+     */
+    public void increment(final long amount) throws BaasdayException {
+        final int shard;
+        synchronized (RANDOM) {
+            shard = RANDOM.nextInt(this.shardCount);
+        }
+        this.incrementShard(shard, amount);
+    }
+
+    /**
+     * <p>キーから決まるシャードの値を増やします。</p>
+     * <p>同じキーによる増減は常に同じシャードに対して行われます。たとえばユーザのIDをキーにすると、ひとつのユーザによる更新が複数のシャードにまたがりません。</p>
+     * @param key シャードを選ぶためのキー
+     * @param amount 増やす量。負の値を指定すると減らします
+     * @throws BaasdayException 更新に失敗した場合
+     */
+    public void increment(final String key, final long amount) throws BaasdayException {
+        this.incrementShard((key.hashCode() & Integer.MAX_VALUE) % this.shardCount, amount);
+    }
+
+    private Query shardsQuery() {
+        return new Query().filter(Query.Filters.equal(COUNTER_FIELD, this.counterName)).limit(LocalQuery.MAX_LIMIT);
+    }
+
+    private long loadShards() throws BaasdayException {
+        final List<Item> items = new ArrayList<Item>();
+        final Cursor<Item> cursor = Item.cursor(this.collectionName, this.shardsQuery());
+        while (cursor.hasNext()) items.addAll(cursor.next().getContents());
+        long total = 0;
+        synchronized (this) {
+            for (final Item item : items) {
+                final Object value = item.get(VALUE_FIELD);
+                if (value instanceof Number) total += ((Number) value).longValue();
+                final Object shard = item.get(SHARD_FIELD);
+                if (shard instanceof Number && !this.shards.containsKey(((Number) shard).intValue())) this.shards.put(((Number) shard).intValue(), item);
+            }
+            this.shardsLoaded = true;
+            this.cachedTotal = total;
+            this.cachedAt = System.currentTimeMillis();
+            this.hasCachedTotal = true;
+        }
+        return total;
+    }
+
+    private synchronized Item shardItem(final int shard) {
+        return this.shards.get(shard);
+    }
+
+    private Item createShard(final int shard, final long amount) throws BaasdayException {
+        final FutureTask<Item> creation;
+        final boolean owner;
+        synchronized (this) {
+            final Item item = this.shards.get(shard);
+            if (item != null) return item;
+            final FutureTask<Item> running = this.creatingShards.get(shard);
+            owner = running == null;
+            if (owner) {
+                creation = new FutureTask<Item>(new Callable<Item>() {
+                    public Item call() throws BaasdayException {
+                        final Map<String, Object> values = new HashMap<String, Object>();
+                        values.put(COUNTER_FIELD, ShardedCounter.this.counterName);
+                        values.put(SHARD_FIELD, shard);
+                        values.put(VALUE_FIELD, amount);
+                        return Item.create(ShardedCounter.this.collectionName, values);
+                    }
+                });
+                this.creatingShards.put(shard, creation);
+            } else {
+                creation = running;
+            }
+        }
+        if (owner) {
+            creation.run();
+            synchronized (this) {
+                this.creatingShards.remove(shard);
+            }
+        }
+        final Item created;
+        try {
+            created = creation.get();
+        } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new BaasdayException(exception);
+        } catch (final ExecutionException exception) {
+            if (exception.getCause() instanceof BaasdayException) throw (BaasdayException) exception.getCause();
+            throw new BaasdayException(exception.getCause());
+        }
+        if (!owner) return created;
+        synchronized (this) {
+            this.shards.put(shard, created);
+        }
+        this.added(amount);
+        return null;
+    }
+
+    private synchronized void added(final long amount) {
+        if (this.hasCachedTotal) this.cachedTotal += amount;
+    }
+
+    private void incrementShard(final int shard, final long amount) throws BaasdayException {
+        synchronized (this.loadLock) {
+            boolean loaded;
+            synchronized (this) {
+                loaded = this.shardsLoaded;
+            }
+            if (!loaded) this.loadShards();
+        }
+        Item item = this.shardItem(shard);
+        if (item == null) {
+            item = this.createShard(shard, amount);
+            if (item == null) return;
+        }
+        item.update(UpdateOperations.increment(VALUE_FIELD, amount));
+        this.added(amount);
+    }
+
+    /**
+     * <p>すべてのシャードの値の合計を返します。</p>
+     * <p>保持している合計がある場合はそれを返します。保持している合計には、このオブジェクトを通じて行った増減が反映されます。</p>
+     * @return 合計の値
+     * @throws BaasdayException 取得に失敗した場合
+     */
+    public long getValue() throws BaasdayException {
+        synchronized (this) {
+            if (this.hasCachedTotal && System.currentTimeMillis() - this.cachedAt < this.cacheMillis) return this.cachedTotal;
+        }
+        return this.loadShards();
+    }
+}
@@ -0,0 +1,32 @@
+package com.baasday;
+
+/**
+ * <p>Publisherから要素を受け取るオブジェクトを表すインターフェースです。</p>
+ * <p>Reactive Streamsのorg.reactivestreams.Subscriberと同じ規約に従います。各メソッドは同時に呼び出されることはありませんが、呼び出されるスレッドは一定ではありません。</p>
+ * @param <T> 要素の型
+ * @see Publisher
+ */
+public interface Subscriber<T> {
+    /**
+     * <p>受け取りを開始したときに最初に呼び出されます。</p>
+     * @param subscription 要素の要求と取り消しに使うオブジェクト
+     */
+    public void onSubscribe(final Subscription subscription);
+
+    /**
+     * <p>要素を受け取ったときに呼び出されます。</p>
+     * @param element 要素
+     */
+    public void onNext(final T element);
+
+    /**
+     * <p>エラーによって受け取りが終了したときに呼び出されます。</p>
+     * @param throwable エラー
+     */
+    public void onError(final Throwable throwable);
+
+    /**
+     * <p>すべての要素を受け取り終えたときに呼び出されます。</p>
+     */
+    public void onComplete();
+}
@@ -0,0 +1,20 @@
+package com.baasday;
+
+/**
+ * <p>PublisherとSubscriberの間の受け取りの状態を表すインターフェースです。</p>
+ * <p>Reactive Streamsのorg.reactivestreams.Subscriptionと同じ規約に従います。</p>
+ * @see Publisher
+ * @see Subscriber
+ */
+public interface Subscription {
+    /**
+     * <p>指定された件数の要素を追加で要求します。</p>
+     * @param count 要求する件数。0以下の場合はSubscriber#onErrorが呼び出されます
+     */
+    public void request(final long count);
+
+    /**
+     * <p>受け取りを取り消します。取り消した後は要素が送られません。</p>
+     */
+    public void cancel();
+}
@@ -0,0 +1,51 @@
+package com.baasday;
+
+final class SymbolTable {
+    static final SymbolTable FIELD_NAMES = new SymbolTable(4096, 64);
+    static final SymbolTable SHORT_VALUES = new SymbolTable(4096, 32);
+
+    private final String[] slots;
+    private final int mask;
+    private final int maxLength;
+
+    SymbolTable(final int size, final int maxLength) {
+        if (Integer.bitCount(size) != 1) throw new IllegalArgumentException("size must be a power of two.");
+        this.slots = new String[size];
+        this.mask = size - 1;
+        this.maxLength = maxLength;
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    String intern(final char[] chars, final int start, final int length) {
+        if (length > this.maxLength) return new String(chars, start, length);
+        int hash = 0;
+        for (int index = start; index < start + length; ++index) hash = 31 * hash + chars[index];
+        final int slot = spread(hash) & this.mask;
+        final String existing = this.slots[slot];
+        if (existing != null && existing.length() == length) {
+            boolean same = true;
+            for (int index = 0; index < length; ++index) {
+                if (existing.charAt(index) != chars[start + index]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) return existing;
+        }
+        final String created = new String(chars, start, length);
+        this.slots[slot] = created;
+        return created;
+    }
+
+    String intern(final String string) {
+        if (string.length() > this.maxLength) return string;
+        final int slot = spread(string.hashCode()) & this.mask;
+        final String existing = this.slots[slot];
+        if (string.equals(existing)) return existing;
+        this.slots[slot] = string;
+        return string;
+    }
+}
@@ -0,0 +1,119 @@
+package com.baasday;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>baasdayサーバとのHTTP通信を行う処理を表すインターフェースです。</p>
+ * <p>Baasday#setTransportで設定すると、すべてのリクエストはこのインターフェースを通じて送られます。既定ではHttpURLConnectionTransportが使われます。</p>
+ * <p>実装は複数のスレッドから同時に呼び出されても安全でなければなりません。</p>
+ * @see Baasday#setTransport(Transport)
+ * @see HttpURLConnectionTransport
+ * @see NioTransport
+ */
+public interface Transport {
+    /**
+     * <p>HTTPリクエストを表すクラスです。</p>
+     */
+    public static final class Request {
+        private final String method;
+        private final URL url;
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        /**
+         * <p>オブジェクトを作成します。</p>
+         * @param method HTTPメソッド
+         * @param url URL
+         * @param headers リクエストヘッダ。nullの場合はヘッダなし
+         * @param body リクエストボディ。nullの場合はボディなし
+         */
+        public Request(final String method, final URL url, final Map<String, String> headers, final byte[] body) {
+            this.method = method;
+            this.url = url;
+            this.headers = headers == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<String, String>(headers));
+            this.body = body;
+        }
+
+        /**
+         * <p>HTTPメソッドを返します。</p>
+         * @return HTTPメソッド
+         */
+        public String getMethod() {
+            return this.method;
+        }
+
+        /**
+         * <p>URLを返します。</p>
+         * @return URL
+         */
+        public URL getUrl() {
+            return this.url;
+        }
+
+        /**
+         * <p>リクエストヘッダを返します。</p>
+         * @return リクエストヘッダ
+         */
+        public Map<String, String> getHeaders() {
+            return this.headers;
+        }
+
+        /**
+         * <p>リクエストボディを返します。</p>
+         * @return リクエストボディ。ボディがない場合はnull
+         */
+        public byte[] getBody() {
+            return this.body;
+        }
+    }
+
+    /**
+     * <p>HTTPレスポンスを表すインターフェースです。</p>
+     * <p>ボディは受信しながら読み出せます。使い終わったら必ずcloseを呼び出してください。</p>
+     */
+    public static interface Response {
+        /**
+         * <p>HTTPステータスコードを返します。</p>
+         * @return HTTPステータスコード
+         */
+        public int getStatusCode();
+
+        /**
+         * <p>指定されたレスポンスヘッダの値を返します。ヘッダ名の大文字と小文字は区別しません。</p>
+         * @param name ヘッダ名
+         * @return ヘッダの値。存在しない場合はnull
+         */
+        public String getHeader(final String name);
+
+        /**
+         * <p>ボディの長さを返します。</p>
+         * @return ボディのバイト数。不明な場合は-1
+         */
+        public int getContentLength();
+
+        /**
+         * <p>ボディを読み出すストリームを返します。</p>
+         * @return ボディを読み出すストリーム
+         */
+        public InputStream getBody();
+
+        /**
+         * <p>レスポンスを閉じ、通信に使った資源を解放します。</p>
+         */
+        public void close();
+    }
+
+    /**
+     * <p>リクエストを送り、レスポンスのヘッダを受信した時点でレスポンスを返します。</p>
+     * <p>HTTPステータスコードがエラーを表す場合も例外をスローせずにレスポンスを返します。</p>
+     * @param request リクエスト
+     * @return レスポンス
+     * @throws IOException 通信に失敗した場合
+     */
+    public Response execute(final Request request) throws IOException;
+}
@@ -0,0 +1,162 @@
+package com.baasday;
+
+import java.util.Map;
+
+/**
+ * <p>コレクション内のアイテムを、ObjectBindingで対応付けたアプリケーションのクラスのオブジェクトとして読み書きするクラスです。</p>
+ * <p>baasdayサーバから返されたJSONは中間のマップを作らずにオブジェクトのフィールドに直接読み込まれ、送るJSONもオブジェクトのフィールドから直接書き出されます。フィールドの値を読むたびにマップを検索したり型を確認したりする必要がないので、大量のオブジェクトを繰り返し参照する場合に向いています。</p>
+ * <p>JSONの変換にはBaasday#setJsonCodecで設定した変換処理ではなく、このライブラリ内蔵の変換処理が使われます。</p>
+ * <p>コレクションがLocalCollection#attachで結び付けられている場合、追加、更新、削除の結果はItemと同じようにその複製にも反映されます。このときはbaasdayサーバが返したJSONを一度マップに変換してから複製とオブジェクトを作成します。</p>
+ * <p>このクラスのメソッドはスレッドセーフです。</p>
+ * @param <T> オブジェクトの型
+ * @see BaasdayCollection
+ * @see ObjectBinding
+ */
+public class TypedCollection<T> {
+    private final ObjectBinding<T> binding;
+    private final APIClient.StreamingObjectFactory<T> factory;
+
+    private static final class BindingFactory<T> implements APIClient.StreamingObjectFactory<T> {
+        private final ObjectBinding<T> binding;
+
+        BindingFactory(final ObjectBinding<T> binding) {
+            this.binding = binding;
+        }
+
+        public T createFromJson(final JsonInput input) throws BaasdayException {
+            return this.binding.read(input);
+        }
+
+        public T createFromAPIResult(final Map<String, Object> values) throws BaasdayException {
+            return this.binding.read(JsonInput.fromValues(values));
+        }
+    }
+
+    /**
+     * <p>ObjectBindingを指定してオブジェクトを作成します。</p>
+     * @param binding アノテーションプロセッサが生成したObjectBindingの実装
+     */
+    public TypedCollection(final ObjectBinding<T> binding) {
+        this.binding = binding;
+        this.factory = new BindingFactory<T>(binding);
+    }
+
+    /**
+     * <p>コレクション名を返します。</p>
+     * @return コレクション名
+     */
+    public String getCollectionName() {
+        return this.binding.getCollectionName();
+    }
+
+    private String collectionAPIPath() {
+        return "items/" + this.binding.getCollectionName();
+    }
+
+    private String apiPath(final T object) throws BaasdayException {
+        final String id = this.binding.getId(object);
+        if (id == null) throw new BaasdayException("The object does not have an id.");
+        return this.collectionAPIPath() + "/" + id;
+    }
+
+    private String jsonString(final T object) {
+        final JsonOutput output = new JsonOutput();
+        this.binding.write(object, output);
+        return output.toString();
+    }
+
+    /**
+     * <p>マップで表された値からオブジェクトを作成します。</p>
+     * <p>Item#getValuesやLocalCollectionが保持するアイテムの値を変換する場合に使います。</p>
+     * @param values 値
+     * @return オブジェクト
+     * @throws BaasdayException 値の型がフィールドの型と合わない場合
+     */
+    public T fromValues(final Map<String, Object> values) throws BaasdayException {
+        return this.factory.createFromAPIResult(values);
+    }
+
+    /**
+     * <p>指定されたIDを持つアイテムを取得して返します。</p>
+     * @param id ID
+     * @return オブジェクト
+     * @throws BaasdayException 取得に失敗した場合、指定されたIDを持つアイテムが存在しない場合
+     */
+    public T fetch(final String id) throws BaasdayException {
+        return APIClient.fetch(this.collectionAPIPath() + "/" + id, this.factory);
+    }
+
+    /**
+     * <p>コレクション内のアイテムを取得して返します。</p>
+     * <p>最大取得件数を指定しない場合や101以上を指定した場合は、最大で100件返します。</p>
+     * @param query 抽出条件
+     * @return 取得結果。コレクションが存在しない場合は空の結果
+     * @throws BaasdayException 取得に失敗した場合、抽出条件が正しくない場合
+     */
+    public ListResult<T> fetchAll(final Query query) throws BaasdayException {
+        return APIClient.fetchAll(this.collectionAPIPath(), query, this.factory);
+    }
+
+    /**
+     * <p>コレクション内のアイテムを取得して返します。</p>
+     * <p>アイテムは最大で100件返します。</p>
+     * @return 取得結果。コレクションが存在しない場合は空の結果
+     * @throws BaasdayException 取得に失敗した場合
+     */
+    public ListResult<T> fetchAll() throws BaasdayException {
+        return this.fetchAll(null);
+    }
+
+    /**
+     * <p>コレクション内のアイテムを順に送り出すPublisherを返します。</p>
+     * @param query 抽出条件。nullの場合はすべてのアイテム
+     * @return オブジェクトを送り出すPublisher
+     * @see Item#publishAll(String, Query)
+     */
+    public Publisher<T> publishAll(final Query query) {
+        return new QueryPublisher<T>(this.collectionAPIPath(), query, this.factory);
+    }
+
+    /**
+     * <p>オブジェクトをアイテムとしてコレクションに追加します。</p>
+     * @param object オブジェクト
+     * @return baasdayサーバが返した、IDなどが設定された新しいオブジェクト
+     * @throws BaasdayException 追加に失敗した場合
+     */
+    public T create(final T object) throws BaasdayException {
+        return this.store(new APIClient().post(this.collectionAPIPath()).requestJsonString(this.jsonString(object)));
+    }
+
+    /**
+     * <p>オブジェクトのすべてのフィールドの値で、対応するアイテムを更新します。</p>
+     * @param object IDを持つオブジェクト
+     * @return baasdayサーバが返した、更新後の新しいオブジェクト
+     * @throws BaasdayException オブジェクトがIDを持たない場合、更新に失敗した場合
+     */
+    public T update(final T object) throws BaasdayException {
+        return this.store(new APIClient().put(this.apiPath(object)).requestJsonString(this.jsonString(object)));
+    }
+
+    /**
+     * <p>オブジェクトに対応するアイテムを削除します。</p>
+     * @param object IDを持つオブジェクト
+     * @throws BaasdayException オブジェクトがIDを持たない場合、削除に失敗した場合
+     */
+    public void delete(final T object) throws BaasdayException {
+        new APIClient().delete(this.apiPath(object)).doRequest();
+        final LocalCollection replica = LocalCollection.attached(this.binding.getCollectionName());
+        if (replica != null) replica.remove(this.binding.getId(object));
+    }
+
+    private T store(final APIClient client) throws BaasdayException {
+        final LocalCollection replica = LocalCollection.attached(this.binding.getCollectionName());
+        if (replica == null) return client.doRequest(this.handler());
+        final Map<String, Object> values = client.doRequest();
+        replica.put(new Item(this.binding.getCollectionName(), values));
+        return this.fromValues(values);
+    }
+
+    private Utility.JSONHandler<T> handler() {
+        return APIClient.objectHandler(this.factory);
+    }
+}
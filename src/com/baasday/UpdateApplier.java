@@ -0,0 +1,92 @@
+package com.baasday;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class UpdateApplier {
+    private UpdateApplier() {
+    }
+
+    static Map<String, Object> apply(final Map<String, Object> values, final Map<String, Object> update) throws BaasdayException {
+        final Map<String, Object> result = values == null ? new HashMap<String, Object>() : new HashMap<String, Object>(values);
+        if (update == null) return result;
+        for (final Map.Entry<String, Object> entry : update.entrySet()) {
+            applyField(result, entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void applyField(final Map<String, Object> target, final String field, final Object operation) throws BaasdayException {
+        final int dot = field.indexOf('.');
+        if (dot >= 0) {
+            final String head = field.substring(0, dot);
+            final Object child = target.get(head);
+            final Map<String, Object> childCopy = child instanceof Map ? new HashMap<String, Object>((Map<String, Object>) child) : new HashMap<String, Object>();
+            applyField(childCopy, field.substring(dot + 1), operation);
+            target.put(head, childCopy);
+            return;
+        }
+        if (!LocalQuery.isOperatorMap(operation)) {
+            target.put(field, Utility.mutableCopy(operation));
+            return;
+        }
+        for (final Map.Entry<String, Object> entry : ((Map<String, Object>) operation).entrySet()) {
+            final String operator = entry.getKey();
+            final Object operand = entry.getValue();
+            if (UpdateOperations.INCREMENT.equals(operator)) {
+                target.put(field, increment(field, target.get(field), operand));
+            } else if (UpdateOperations.PUSH.equals(operator)) {
+                final List<Object> list = listCopy(field, target.get(field));
+                list.add(Utility.mutableCopy(operand));
+                target.put(field, list);
+            } else if (UpdateOperations.PUSH_UNIQUE.equals(operator)) {
+                final List<Object> list = listCopy(field, target.get(field));
+                if (!containsValue(list, operand)) list.add(Utility.mutableCopy(operand));
+                target.put(field, list);
+            } else if (UpdateOperations.PULL.equals(operator)) {
+                if (!target.containsKey(field)) continue;
+                final List<Object> list = listCopy(field, target.get(field));
+                for (int index = list.size() - 1; index >= 0; --index) {
+                    if (LocalQuery.valuesEqual(list.get(index), operand)) list.remove(index);
+                }
+                target.put(field, list);
+            } else if (UpdateOperations.UNSET.equals(operator)) {
+                target.remove(field);
+            } else {
+                throw new BaasdayException("Unsupported update operator: " + operator);
+            }
+        }
+    }
+
+    private static boolean isIntegral(final Object number) {
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    private static Number increment(final String field, final Object current, final Object amount) throws BaasdayException {
+        if (!(amount instanceof Number)) throw new BaasdayException("The amount to increment the field " + field + " by is not a number: " + amount);
+        if (current != null && !(current instanceof Number)) throw new BaasdayException("The value of the field " + field + " cannot be incremented because it is not a number.");
+        final Number base = current == null ? Integer.valueOf(0) : (Number) current;
+        if (isIntegral(base) && isIntegral(amount)) {
+            final long sum = base.longValue() + ((Number) amount).longValue();
+            if (sum >= Integer.MIN_VALUE && sum <= Integer.MAX_VALUE) return (int) sum;
+            return sum;
+        }
+        return base.doubleValue() + ((Number) amount).doubleValue();
+    }
+
+    private static List<Object> listCopy(final String field, final Object current) throws BaasdayException {
+        if (current == null) return new ArrayList<Object>();
+        if (!(current instanceof List)) throw new BaasdayException("The value of the field " + field + " is not a list.");
+        return new ArrayList<Object>((List<?>) current);
+    }
+
+    private static boolean containsValue(final List<Object> list, final Object value) {
+        for (final Object element : list) {
+            if (LocalQuery.valuesEqual(element, value)) return true;
+        }
+        return false;
+    }
+}
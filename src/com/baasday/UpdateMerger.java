@@ -0,0 +1,19 @@
+package com.baasday;
+
+import java.util.Map;
+
+/**
+ * <p>条件付きの更新が競合したときに、最新の値から更新内容を作り直す処理を表すインターフェースです。</p>
+ * @param <T> 更新するオブジェクトの型
+ * @see Item#updateWithRetry(UpdateMerger, int)
+ */
+public interface UpdateMerger<T extends BaasdayObject> {
+    /**
+     * <p>オブジェクトの現在の値をもとに更新内容を返します。</p>
+     * <p>競合が起きるたびに、baasdayサーバから取得し直した最新の値を持つオブジェクトを引数として再び呼び出されます。</p>
+     * @param current 現在の値を持つオブジェクト
+     * @return 更新するフィールドと値。nullの場合は更新を中止します
+     * @throws BaasdayException 更新内容を作れない場合
+     */
+    public Map<String, Object> merge(final T current) throws BaasdayException;
+}
@@ -67,6 +67,8 @@ public final class UpdateOperations {
      * @return 更新処理
      */
     public static Map<String, Object> decrement(final String field, final Number amount) {
+        if (amount instanceof Integer || amount instanceof Short || amount instanceof Byte) return increment(field, -amount.longValue());
+        if (amount instanceof Long && amount.longValue() != Long.MIN_VALUE) return increment(field, -amount.longValue());
         return increment(field, -amount.doubleValue());
     }
 
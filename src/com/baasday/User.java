@@ -64,4 +64,35 @@ public class User extends BaasdayObject {
     public static ListResult<User> fetchAll() throws BaasdayException {
         return fetchAll(null);
     }
+
+    /**
+     * <p>ユーザを順に送り出すPublisherを返します。</p>
+     * <p>ユーザは要求された分だけ、baasdayサーバから最大100件ずつ取得しながら送り出されます。取得はSubscriptionで要求されるまで行われず、途中で取り消すと以降の取得は行われません。抽出条件の取得開始位置と最大取得件数はすべてのページを通じた範囲として扱われ、最大待ち時間は無視されます。</p>
+     * @param query 抽出条件。nullの場合はすべてのユーザ
+     * @return ユーザを送り出すPublisher
+     * @see Item#publishAll(String, Query)
+     */
+    public static Publisher<User> publishAll(final Query query) {
+        return new QueryPublisher<User>(USERS_API_PATH, query, USER_FACTORY);
+    }
+
+    /**
+     * <p>ユーザをキーセット方式で順にページ単位で取得するCursorを返します。</p>
+     * @param query 抽出条件。nullの場合はすべてのユーザを"_id"の昇順で取得
+     * @return Cursor
+     * @see Item#cursor(String, Query)
+     */
+    public static Cursor<User> cursor(final Query query) {
+        return new Cursor<User>(USERS_API_PATH, USER_FACTORY, query);
+    }
+
+    /**
+     * <p>Cursor#serializeで保存した位置から取得を再開するCursorを返します。</p>
+     * @param serializedCursor Cursor#serializeが返した文字列
+     * @return Cursor
+     * @throws BaasdayException 文字列がユーザのCursorのものではない場合
+     */
+    public static Cursor<User> resumeCursor(final String serializedCursor) throws BaasdayException {
+        return Cursor.resume(serializedCursor, USERS_API_PATH, USER_FACTORY);
+    }
 }
@@ -1,120 +1,268 @@
 package com.baasday;
 
-import android.text.format.Time;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
 import java.util.*;
 
 final class Utility {
     private Utility() {
     }
 
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final ThreadLocal<CharsetDecoder> UTF_8_DECODER = new ThreadLocal<CharsetDecoder>() {
+        protected CharsetDecoder initialValue() {
+            return UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    };
+
+    private static final int DEFAULT_READ_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_INITIAL_READ_BUFFER_SIZE = 1024 * 1024;
+
     static void copy(final InputStream from, final OutputStream to) throws IOException {
-        final byte[] buffer = new byte[1024];
-        while (from.read(buffer) != -1) to.write(buffer);
+        final byte[] buffer = BufferPool.acquireBytes(DEFAULT_READ_BUFFER_SIZE);
+        try {
+            int count;
+            while ((count = from.read(buffer)) != -1) to.write(buffer, 0, count);
+        } finally {
+            BufferPool.releaseBytes(buffer);
+        }
     }
 
-    static <K, V> Map<K, V> singleEntryMap(final K key, final V value) {
-        final Map<K, V> result = new HashMap<K, V>();
-        result.put(key, value);
-        return result;
+    static Map<String, Object> mapFromJSONStream(final InputStream inputStream, final int contentLength) throws IOException, BaasdayException {
+        return mapFromJSONStream(inputStream, contentLength, null);
     }
 
-    private static Object fixObjectForJSON(final Object object) {
-        if (object == null) {
-            return JSONObject.NULL;
-        } else if (object instanceof Map) {
-            @SuppressWarnings("unchecked")
-            final Map<String, Object> map = (Map<String, Object>) object;
-            final JSONObject result = new JSONObject();
-            for (final Map.Entry<String, Object> entry : map.entrySet()) {
-                try {
-                    result.put(entry.getKey(), fixObjectForJSON(entry.getValue()));
-                } catch (final JSONException exception) {}
-            }
-            return result;
-        } else if (object instanceof List) {
-            final List<Object> fixed = new ArrayList<Object>(((List) object).size());
-            for (final Object value : (List) object) {
-                fixed.add(fixObjectForJSON(value));
+    static interface JSONHandler<R> {
+        public R handle(final CharBuffer json) throws BaasdayException;
+    }
+
+    static Map<String, Object> mapFromJSONStream(final InputStream inputStream, final int contentLength, final Set<String> fields) throws IOException, BaasdayException {
+        return readJSONStream(inputStream, contentLength, new JSONHandler<Map<String, Object>>() {
+            public Map<String, Object> handle(final CharBuffer json) throws BaasdayException {
+                if (isBlank(json)) return new HashMap<String, Object>();
+                if (fields != null) return new JsonReader(json.array(), json.arrayOffset() + json.position(), json.remaining()).readDocumentFields(fields);
+                return mapFromJSONString(json);
             }
-            return new JSONArray(fixed);
-        } else if (object instanceof BasicObject) {
-            return fixObjectForJSON(((BasicObject) object).getValues());
-        } else if (object instanceof Date) {
-            final Map<String, Object> result = new HashMap<String, Object>();
-            result.put("$type", "datetime");
-            final Time time = new Time();
-            time.set(((Date) object).getTime());
-            result.put("$value", time.format3339(false));
-            return fixObjectForJSON(result);
-        } else {
-            return object;
+        });
+    }
+
+    private static boolean isBlank(final CharBuffer json) {
+        for (int index = json.position(); index < json.limit(); ++index) {
+            final char c = json.get(index);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return false;
         }
+        return true;
     }
 
-    static String jsonString(final Map<String, Object> values) {
-        return fixObjectForJSON(values).toString();
-    }
-
-    private static Object fixObjectInJSON(final Object object) throws BaasdayException {
-        if (object == null || JSONObject.NULL.equals(object)) {
-            return null;
-        } else if (object instanceof JSONObject) {
-            final JSONObject jsonObject = (JSONObject) object;
-            try {
-                if (jsonObject.has("$type") && "datetime".equals(jsonObject.get("$type")) && jsonObject.has("$value")) {
-                    final Object value = jsonObject.get("$value");
-                    if (value == null || !(value instanceof String)) return null;
-                    final Time time = new Time();
-                    if (!time.parse3339((String) value)) return null;
-                    return new Date(time.toMillis(true));
-                }
-            } catch (final JSONException exception) {
-                throw new BaasdayException(exception);
-            }
-            final Map<String, Object> result = new HashMap<String, Object>();
-            final Iterator keysIterator = jsonObject.keys();
-            while (keysIterator.hasNext()) {
-                final String key = keysIterator.next().toString();
-                try {
-                    result.put(key, fixObjectInJSON(jsonObject.get(key)));
-                } catch (final JSONException exception) {
-                    throw new BaasdayException(exception);
-                }
-            }
-            return result;
-        } else if (object instanceof JSONArray) {
-            final JSONArray jsonArray = (JSONArray) object;
-            final int length = jsonArray.length();
-            final List<Object> result = new ArrayList<Object>(length);
-            for (int index = 0; index < length; ++index) {
-                try {
-                    result.add(fixObjectInJSON(jsonArray.get(index)));
-                } catch (final JSONException exception) {
-                    throw new BaasdayException(exception);
+    static <R> R readJSONStream(final InputStream inputStream, final int contentLength, final JSONHandler<R> handler) throws IOException, BaasdayException {
+        byte[] bytes = BufferPool.acquireBytes(contentLength > 0 ? Math.min(contentLength, MAX_INITIAL_READ_BUFFER_SIZE) : DEFAULT_READ_BUFFER_SIZE);
+        char[] chars = null;
+        try {
+            int length = 0;
+            int count;
+            while ((count = inputStream.read(bytes, length, bytes.length - length)) != -1) {
+                length += count;
+                if (length == bytes.length) {
+                    final int next = inputStream.read();
+                    if (next == -1) break;
+                    final byte[] grown = BufferPool.acquireBytes(bytes.length * 2);
+                    System.arraycopy(bytes, 0, grown, 0, length);
+                    BufferPool.releaseBytes(bytes);
+                    bytes = grown;
+                    bytes[length++] = (byte) next;
                 }
             }
-            return result;
-        } else {
-            return object;
+            chars = BufferPool.acquireChars(length);
+            final CharsetDecoder decoder = UTF_8_DECODER.get();
+            decoder.reset();
+            final CharBuffer charBuffer = CharBuffer.wrap(chars);
+            decoder.decode(ByteBuffer.wrap(bytes, 0, length), charBuffer, true);
+            decoder.flush(charBuffer);
+            charBuffer.flip();
+            return handler.handle(charBuffer);
+        } finally {
+            BufferPool.releaseBytes(bytes);
+            if (chars != null) BufferPool.releaseChars(chars);
         }
     }
 
-    static Map<String, Object> mapFromJSONString(final String json) throws BaasdayException {
+    static String urlEncode(final String string) {
         try {
-            final Object fixed = fixObjectInJSON(new JSONObject(json));
-            if (!(fixed instanceof Map)) throw new BaasdayException("The API result is not a JSON Object: " + json);
+            return URLEncoder.encode(string, "UTF-8");
+        } catch (final UnsupportedEncodingException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    static int hashMapCapacity(final int expectedSize) {
+        if (expectedSize < 3) return expectedSize + 1;
+        return (int) (expectedSize / 0.75f) + 1;
+    }
+
+    private static final class FrozenMap extends AbstractMap<String, Object> {
+        private final Map<String, Object> values;
+        private final Set<Map.Entry<String, Object>> entries;
+
+        FrozenMap(final Map<String, Object> values) {
+            this.values = values;
+            this.entries = Collections.unmodifiableMap(values).entrySet();
+        }
+
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return this.entries;
+        }
+
+        public Object get(final Object key) {
+            return this.values.get(key);
+        }
+
+        public boolean containsKey(final Object key) {
+            return this.values.containsKey(key);
+        }
+
+        public int size() {
+            return this.values.size();
+        }
+    }
+
+    private static final class FrozenList extends AbstractList<Object> implements RandomAccess {
+        private final Object[] elements;
+
+        FrozenList(final Object[] elements) {
+            this.elements = elements;
+        }
+
+        public Object get(final int index) {
+            return this.elements[index];
+        }
+
+        public int size() {
+            return this.elements.length;
+        }
+    }
+
+    private static final class FrozenDate extends Date {
+        private static final long serialVersionUID = 1L;
+
+        FrozenDate(final long time) {
+            super(time);
+        }
+
+        private static UnsupportedOperationException immutable() {
+            return new UnsupportedOperationException("Dates in object values cannot be modified.");
+        }
+
+        public void setTime(final long time) {
+            throw immutable();
+        }
+
+        @Deprecated
+        public void setYear(final int year) {
+            throw immutable();
+        }
+
+        @Deprecated
+        public void setMonth(final int month) {
+            throw immutable();
+        }
+
+        @Deprecated
+        public void setDate(final int date) {
+            throw immutable();
+        }
+
+        @Deprecated
+        public void setHours(final int hours) {
+            throw immutable();
+        }
+
+        @Deprecated
+        public void setMinutes(final int minutes) {
+            throw immutable();
+        }
+
+        @Deprecated
+        public void setSeconds(final int seconds) {
+            throw immutable();
+        }
+    }
+
+    private static final Map<String, Object> EMPTY_FROZEN_MAP = new FrozenMap(new HashMap<String, Object>());
+
+    static Object freezeValue(final Object value) {
+        if (value instanceof Map) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> map = (Map<String, Object>) value;
+            return freezeMap(map);
+        } else if (value instanceof List) {
+            return freezeList((List<?>) value);
+        } else if (value instanceof FrozenDate) {
+            return value;
+        } else if (value instanceof Date) {
+            return new FrozenDate(((Date) value).getTime());
+        } else {
+            return value;
+        }
+    }
+
+    static Map<String, Object> freezeMap(final Map<String, Object> map) {
+        if (map == null || map.isEmpty()) return EMPTY_FROZEN_MAP;
+        if (map instanceof FrozenMap) return map;
+        final Map<String, Object> copy = new LinkedHashMap<String, Object>(hashMapCapacity(map.size()));
+        for (final Map.Entry<String, Object> entry : map.entrySet()) copy.put(entry.getKey(), freezeValue(entry.getValue()));
+        return new FrozenMap(copy);
+    }
+
+    private static List<Object> freezeList(final List<?> list) {
+        if (list instanceof FrozenList) {
             @SuppressWarnings("unchecked")
-            final Map<String, Object> result = (Map<String, Object>) fixed;
-            return result;
-        } catch (final JSONException exception) {
-            throw new BaasdayException(exception);
+            final List<Object> frozen = (List<Object>) list;
+            return frozen;
+        }
+        final Object[] elements = new Object[list.size()];
+        int index = 0;
+        for (final Object value : list) elements[index++] = freezeValue(value);
+        return new FrozenList(elements);
+    }
+
+    static Object mutableCopy(final Object value) {
+        if (value instanceof Map) {
+            final Map<?, ?> map = (Map<?, ?>) value;
+            final Map<String, Object> copy = new HashMap<String, Object>(hashMapCapacity(map.size()));
+            for (final Map.Entry<?, ?> entry : map.entrySet()) copy.put((String) entry.getKey(), mutableCopy(entry.getValue()));
+            return copy;
+        } else if (value instanceof List) {
+            final List<?> list = (List<?>) value;
+            final List<Object> copy = new ArrayList<Object>(list.size());
+            for (final Object element : list) copy.add(mutableCopy(element));
+            return copy;
+        } else if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        } else {
+            return value;
         }
     }
+
+    static <K, V> Map<K, V> singleEntryMap(final K key, final V value) {
+        final Map<K, V> result = new HashMap<K, V>();
+        result.put(key, value);
+        return result;
+    }
+
+    static String jsonString(final Map<String, Object> values) {
+        return Baasday.getJsonCodec().encode(values);
+    }
+
+    static Map<String, Object> mapFromJSONString(final CharSequence json) throws BaasdayException {
+        return Baasday.getJsonCodec().decode(json);
+    }
 }
@@ -0,0 +1,93 @@
+package com.baasday;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>フィールドの値のマップを組み立てるクラスです。</p>
+ * <p>BasicObject#getValuesが返すマップは変更できないので、値を変更したマップが必要な場合はBasicObject#toBuilderでこのクラスのオブジェクトを作成し、変更してからbuildでマップを作成します。作成したマップはItem#createやItem#updateなどに渡せます。</p>
+ * <p>このクラスはスレッドセーフではありません。</p>
+ * @see BasicObject#toBuilder()
+ */
+public final class ValuesBuilder {
+    private final Map<String, Object> values;
+
+    /**
+     * <p>オブジェクトを作成します。</p>
+     */
+    public ValuesBuilder() {
+        this.values = new HashMap<String, Object>();
+    }
+
+    /**
+     * <p>指定された値をコピーしてオブジェクトを作成します。</p>
+     * <p>値として含まれるマップやリストもコピーされるので、このオブジェクトを変更しても元のマップは変化しません。</p>
+     * @param values 値
+     */
+    public ValuesBuilder(final Map<String, Object> values) {
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> copy = values == null ? new HashMap<String, Object>() : (Map<String, Object>) Utility.mutableCopy(values);
+        this.values = copy;
+    }
+
+    /**
+     * <p>指定されたフィールドの値を返します。</p>
+     * <p>値がマップやリストの場合、返されたオブジェクトを変更するとこのオブジェクトの値も変更されます。</p>
+     * @param field フィールド名
+     * @return フィールドの値。フィールドが存在しない場合はnull
+     */
+    public Object get(final String field) {
+        return this.values.get(field);
+    }
+
+    /**
+     * <p>指定されたフィールドが存在するかどうかを返します。</p>
+     * @param field フィールド名
+     * @return フィールドが存在する場合はtrue、存在しない場合はfalse
+     */
+    public boolean has(final String field) {
+        return this.values.containsKey(field);
+    }
+
+    /**
+     * <p>指定されたフィールドに値を設定します。</p>
+     * @param field フィールド名
+     * @param value 値
+     * @return このオブジェクト
+     */
+    public ValuesBuilder set(final String field, final Object value) {
+        this.values.put(field, value);
+        return this;
+    }
+
+    /**
+     * <p>指定されたマップに含まれるすべてのフィールドに値を設定します。</p>
+     * @param values フィールドと値のマップ
+     * @return このオブジェクト
+     */
+    public ValuesBuilder setAll(final Map<String, Object> values) {
+        this.values.putAll(values);
+        return this;
+    }
+
+    /**
+     * <p>指定されたフィールドを取り除きます。</p>
+     * @param field フィールド名
+     * @return このオブジェクト
+     */
+    public ValuesBuilder remove(final String field) {
+        this.values.remove(field);
+        return this;
+    }
+
+    /**
+     * <p>現在の値から変更できないマップを作成して返します。</p>
+     * <p>作成したマップはこのオブジェクトから独立しているので、この後このオブジェクトを変更しても変化しません。</p>
+     * @return 値のマップ
+     */
+    public Map<String, Object> build() {
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> copy = (Map<String, Object>) Utility.mutableCopy(this.values);
+        return Utility.freezeMap(copy);
+    }
+}